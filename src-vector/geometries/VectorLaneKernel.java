@@ -0,0 +1,138 @@
+package geometries;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.LT;
+
+/**
+ * Lane kernels on the Java Vector API: the four lanes of a wide node or of a triangle block
+ * are processed by one 256-bit vector operation per step of the scalar loop.
+ * <p>
+ * This source root is compiled with {@code --add-modules jdk.incubator.vector}, and the class is loaded
+ * reflectively by {@link LaneKernel}. Every operation repeats the scalar loops of {@link WideBVH} and
+ * {@link TriangleBlocks} lane by lane - no fused multiply-add, the same order of additions - so the
+ * kernels find exactly the same hits. The NaN of a zero direction component on a slab plane is ignored
+ * by selecting with comparison masks, which are false for NaN, as the plain comparisons of the scalar loop.
+ * </p>
+ */
+final class VectorLaneKernel implements LaneKernel {
+    /** Four doubles per vector, one per lane */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+    /** Four floats per vector, widened to {@link #SPECIES} */
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_128;
+
+    /**
+     * Constructs the kernel.
+     *
+     * @throws UnsupportedOperationException if the processor has no vectors of four doubles,
+     *                                       where the vector operations would be emulated slowly
+     */
+    VectorLaneKernel() {
+        if (SPECIES.length() != WideBVH.WIDTH || SPECIES.length() != TriangleBlocks.WIDTH)
+            throw new IllegalStateException("Lane width mismatch");
+        if (DoubleVector.SPECIES_PREFERRED.length() < SPECIES.length())
+            throw new UnsupportedOperationException("No 256-bit vectors");
+    }
+
+    @Override
+    public void testBoxes(double[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                          double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                          double tMax, double[] entries) {
+        testBoxes(DoubleVector.fromArray(SPECIES, bounds, nearX), DoubleVector.fromArray(SPECIES, bounds, nearY),
+                DoubleVector.fromArray(SPECIES, bounds, nearZ), DoubleVector.fromArray(SPECIES, bounds, farX),
+                DoubleVector.fromArray(SPECIES, bounds, farY), DoubleVector.fromArray(SPECIES, bounds, farZ),
+                ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+    }
+
+    @Override
+    public void testBoxes(float[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                          double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                          double tMax, double[] entries) {
+        testBoxes(widen(bounds, nearX), widen(bounds, nearY), widen(bounds, nearZ),
+                widen(bounds, farX), widen(bounds, farY), widen(bounds, farZ),
+                ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+    }
+
+    /**
+     * Loads four bounds in single precision, widened to double.
+     *
+     * @param bounds the bounds
+     * @param offset the index of the first lane
+     * @return the bounds of the four lanes
+     */
+    private static DoubleVector widen(float[] bounds, int offset) {
+        return (DoubleVector) FloatVector.fromArray(FLOAT_SPECIES, bounds, offset)
+                .convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+
+    /**
+     * Tests the ray against the four boxes of the planes.
+     */
+    private static void testBoxes(DoubleVector nearX, DoubleVector nearY, DoubleVector nearZ,
+                                  DoubleVector farX, DoubleVector farY, DoubleVector farZ,
+                                  double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                                  double tMax, double[] entries) {
+        DoubleVector tNear = DoubleVector.zero(SPECIES);
+        DoubleVector tFar = DoubleVector.broadcast(SPECIES, tMax);
+        DoubleVector t = nearX.sub(ox).mul(invDx);
+        tNear = tNear.blend(t, t.compare(GT, tNear));
+        t = nearY.sub(oy).mul(invDy);
+        tNear = tNear.blend(t, t.compare(GT, tNear));
+        t = nearZ.sub(oz).mul(invDz);
+        tNear = tNear.blend(t, t.compare(GT, tNear));
+        t = farX.sub(ox).mul(invDx);
+        tFar = tFar.blend(t, t.compare(LT, tFar));
+        t = farY.sub(oy).mul(invDy);
+        tFar = tFar.blend(t, t.compare(LT, tFar));
+        t = farZ.sub(oz).mul(invDz);
+        tFar = tFar.blend(t, t.compare(LT, tFar));
+        tNear.blend(Double.POSITIVE_INFINITY, tNear.compare(GT, tFar)).intoArray(entries, 0);
+    }
+
+    @Override
+    public void intersectTriangles(double[] data, int b, double ox, double oy, double oz,
+                                   double dx, double dy, double dz, double[] t, double[] u, double[] v) {
+        int w = TriangleBlocks.WIDTH;
+        DoubleVector e1x = DoubleVector.fromArray(SPECIES, data, b + 3 * w);
+        DoubleVector e1y = DoubleVector.fromArray(SPECIES, data, b + 4 * w);
+        DoubleVector e1z = DoubleVector.fromArray(SPECIES, data, b + 5 * w);
+        DoubleVector e2x = DoubleVector.fromArray(SPECIES, data, b + 6 * w);
+        DoubleVector e2y = DoubleVector.fromArray(SPECIES, data, b + 7 * w);
+        DoubleVector e2z = DoubleVector.fromArray(SPECIES, data, b + 8 * w);
+
+        DoubleVector hx = e2z.mul(dy).sub(e2y.mul(dz));
+        DoubleVector hy = e2x.mul(dz).sub(e2z.mul(dx));
+        DoubleVector hz = e2y.mul(dx).sub(e2x.mul(dy));
+        DoubleVector a = e1x.mul(hx).add(e1y.mul(hy)).add(e1z.mul(hz));
+        DoubleVector f = DoubleVector.broadcast(SPECIES, 1.0).div(a);
+
+        DoubleVector sx = DoubleVector.broadcast(SPECIES, ox).sub(DoubleVector.fromArray(SPECIES, data, b));
+        DoubleVector sy = DoubleVector.broadcast(SPECIES, oy).sub(DoubleVector.fromArray(SPECIES, data, b + w));
+        DoubleVector sz = DoubleVector.broadcast(SPECIES, oz).sub(DoubleVector.fromArray(SPECIES, data, b + 2 * w));
+        DoubleVector laneU = f.mul(sx.mul(hx).add(sy.mul(hy)).add(sz.mul(hz)));
+
+        DoubleVector qx = sy.mul(e1z).sub(sz.mul(e1y));
+        DoubleVector qy = sz.mul(e1x).sub(sx.mul(e1z));
+        DoubleVector qz = sx.mul(e1y).sub(sy.mul(e1x));
+        DoubleVector laneV = f.mul(qx.mul(dx).add(qy.mul(dy)).add(qz.mul(dz)));
+        DoubleVector laneT = f.mul(e2x.mul(qx).add(e2y.mul(qy)).add(e2z.mul(qz)));
+        // Tiny magnitudes are zeroed inline: vectors passed to a helper which C2 does not inline are boxed
+        laneU = laneU.blend(0, laneU.abs().compare(LT, TriangleBlocks.ZERO));
+        laneV = laneV.blend(0, laneV.abs().compare(LT, TriangleBlocks.ZERO));
+        laneT = laneT.blend(0, laneT.abs().compare(LT, TriangleBlocks.ZERO));
+
+        // Every comparison of a NaN lane is false, so a degenerate lane just fails them
+        VectorMask<Double> hit = a.abs().compare(VectorOperators.GE, TriangleBlocks.ZERO)
+                .and(laneU.compare(GT, 0)).and(laneU.compare(LT, 1))
+                .and(laneV.compare(GT, 0)).and(laneU.add(laneV).compare(LT, 1))
+                .and(laneT.compare(GT, 0));
+        DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY).blend(laneT, hit).intoArray(t, 0);
+        laneU.intoArray(u, 0);
+        laneV.intoArray(v, 0);
+    }
+}
@@ -0,0 +1,311 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Base class of the Bounding Volume Hierarchy (BVH) builders.
+ * <p>
+ * The bounding boxes of the shapes are cached once in a primitive array, and the tree
+ * is built by partitioning an array of shape indices in place. Subtrees are built as
+ * {@link RecursiveTask}s on the common {@link ForkJoinPool}, so large scenes are built
+ * on all the cores; small subtrees are built sequentially in the current task.
+ * The resulting tree is made of nested {@link Geometries} objects.
+ * </p>
+ * Subclasses decide how the shapes of a node are split between its two children.
+ */
+public abstract class BVHBuilder {
+    /**
+     * Subtrees with less shapes than this are built sequentially.
+     */
+    private static final int SEQUENTIAL_CUTOFF = 1024;
+
+    /**
+     * Subtrees with less shapes than this are built sequentially
+     * (package-private, so the tests can build a whole tree sequentially).
+     */
+    int sequentialCutoff = SEQUENTIAL_CUTOFF;
+
+    /**
+     * Maximum amount of shapes that a leaf is created for without evaluating splits.
+     */
+    protected int leafSize = 2;
+
+    /**
+     * Duration of the last build in milliseconds.
+     */
+    private long buildTime = 0;
+
+    /**
+     * SAH cost of the tree after the last build, the reference for the quality of refitted trees.
+     */
+    private double builtCost = 0;
+
+    /**
+     * Ratio of the cost of a refitted tree to its cost when built, beyond which it is rebuilt.
+     */
+    private double rebuildThreshold = 1.5;
+
+    /**
+     * Rebuilds the given collection into a BVH.
+     * Nested collections (groups of shapes, or an older hierarchy) are dissolved, unless compiled,
+     * so the hierarchy is built over the shapes themselves.
+     * Shapes without a finite bounding box (e.g. planes) are pulled out of the hierarchy into
+     * a short list directly in the root collection, which is always tested next to the
+     * hierarchy of the finite shapes, so they do not defeat the culling of any node.
+     *
+     * @param geometries the collection to reorganize
+     */
+    public void build(Geometries geometries) {
+        long start = System.nanoTime();
+        geometries.setBoundingBox();
+        List<Intersectable> shapes = geometries.getShapes();
+        geometries.unflatten();
+
+        List<Intersectable> leaves = new ArrayList<>();
+        collectLeaves(geometries, leaves);
+        List<Intersectable> unbounded = new ArrayList<>();
+        List<Intersectable> bounded = new ArrayList<>();
+        for (Intersectable shape : leaves) {
+            BoundingBox box = shape.getBoundingBox();
+            if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) unbounded.add(shape);
+            else bounded.add(shape);
+        }
+        shapes.clear();
+        if (bounded.size() > leafSize) {
+            Primitives prims = new Primitives(bounded);
+            int[] order = new int[prims.count];
+            for (int i = 0; i < order.length; ++i) order[i] = i;
+
+            Geometries root = ForkJoinPool.commonPool().invoke(new BuildTask(this, prims, order, 0, order.length));
+            if (unbounded.isEmpty()) {
+                shapes.addAll(root.getShapes());
+                geometries.boundingBox = root.boundingBox;
+            } else shapes.add(root);
+        } else shapes.addAll(bounded);
+        // The root box does not contain the unbounded shapes, so it must not cull them
+        if (!unbounded.isEmpty()) {
+            shapes.addAll(unbounded);
+            geometries.boundingBox = null;
+        }
+        builtCost = geometries.calculateSAHCost();
+        buildTime = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Updates a collection previously built by this builder after its shapes moved
+     * (e.g. for the next frame of an animation). The tree is refitted in linear time, and
+     * fully rebuilt only if its SAH cost grew beyond the rebuild threshold relative to its cost
+     * after the last build. A compiled collection is compiled again with the same layout and precision.
+     *
+     * @param geometries the collection to update
+     * @return true if the tree was rebuilt, false if it was only refitted
+     */
+    public boolean update(Geometries geometries) {
+        long start = System.nanoTime();
+        geometries.refit();
+        if (geometries.calculateSAHCost() <= builtCost * rebuildThreshold) {
+            buildTime = (System.nanoTime() - start) / 1_000_000;
+            return false;
+        }
+
+        BVHLayout layout = geometries.getLayout();
+        boolean singlePrecision = geometries.isSinglePrecision();
+        build(geometries);
+        if (layout != null) geometries.flatten(layout, singlePrecision);
+        return true;
+    }
+
+    /**
+     * Collects the shapes in the leaves of a tree of nested collections.
+     * Compiled collections are kept whole.
+     *
+     * @param geometries the root of the tree
+     * @param leaves     output - the shapes
+     */
+    private static void collectLeaves(Geometries geometries, List<Intersectable> leaves) {
+        for (Intersectable shape : geometries.getShapes()) {
+            if (shape instanceof Geometries child && !child.isFlattened()) collectLeaves(child, leaves);
+            else leaves.add(shape);
+        }
+    }
+
+    /**
+     * Sets the ratio of the SAH cost of a refitted tree to its cost when built,
+     * beyond which {@link #update(Geometries)} rebuilds the tree.
+     *
+     * @param rebuildThreshold the threshold, at least 1
+     * @return this builder instance
+     * @throws IllegalArgumentException if the threshold is less than 1
+     */
+    public BVHBuilder setRebuildThreshold(double rebuildThreshold) {
+        if (rebuildThreshold < 1) throw new IllegalArgumentException("Rebuild threshold must be at least 1");
+        this.rebuildThreshold = rebuildThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the duration of the last build or update.
+     *
+     * @return the build time in milliseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Chooses how to split the shapes {@code order[start..end)} of a node, and partitions
+     * the order array accordingly.
+     *
+     * @param prims   the cached bounds of all the shapes
+     * @param order   indices of the shapes, partitioned in place
+     * @param start   first index (inclusive)
+     * @param end     last index (exclusive)
+     * @param nodeBox the bounding box of the node
+     * @return the index of the first shape of the right child, or -1 to make the node a leaf
+     */
+    protected abstract int split(Primitives prims, int[] order, int start, int end, BoundingBox nodeBox);
+
+    /**
+     * Task building the subtree of the shapes {@code order[start..end)}.
+     * The tasks live only during a build and are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class BuildTask extends RecursiveTask<Geometries> {
+        /** The builder choosing the splits */
+        private final BVHBuilder builder;
+        /** The cached bounds of all the shapes */
+        private final Primitives prims;
+        /** Indices of the shapes */
+        private final int[] order;
+        /** First index (inclusive) */
+        private final int start;
+        /** Last index (exclusive) */
+        private final int end;
+
+        /**
+         * @param builder the builder choosing the splits
+         * @param prims   the cached bounds of all the shapes
+         * @param order   indices of the shapes, partitioned in place
+         * @param start   first index (inclusive)
+         * @param end     last index (exclusive)
+         */
+        BuildTask(BVHBuilder builder, Primitives prims, int[] order, int start, int end) {
+            this.builder = builder;
+            this.prims = prims;
+            this.order = order;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Geometries compute() {
+            Geometries node = new Geometries();
+            node.boundingBox = prims.bounds(order, start, end);
+
+            int mid = end - start <= builder.leafSize ? -1 : builder.split(prims, order, start, end, node.boundingBox);
+            if (mid < 0) {
+                for (int i = start; i < end; ++i) node.add(prims.shapes[order[i]]);
+                return node;
+            }
+
+            BuildTask left = new BuildTask(builder, prims, order, start, mid);
+            BuildTask right = new BuildTask(builder, prims, order, mid, end);
+            if (end - start < builder.sequentialCutoff) {
+                node.add(left.compute(), right.compute());
+            } else {
+                left.fork();
+                Geometries rightNode = right.compute();
+                node.add(left.join(), rightNode);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Resets bounds stored as {minX, minY, minZ, maxX, maxY, maxZ} to an empty box.
+     *
+     * @param b the bounds
+     */
+    protected static void resetBounds(double[] b) {
+        b[0] = b[1] = b[2] = Double.POSITIVE_INFINITY;
+        b[3] = b[4] = b[5] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * The shapes being built with their bounding boxes cached in a primitive array,
+     * so the split loops do not go through the box objects.
+     */
+    protected static class Primitives {
+        /** The shapes */
+        final Intersectable[] shapes;
+        /** Amount of shapes */
+        final int count;
+        /** Bounds of each shape as {minX, minY, minZ, maxX, maxY, maxZ} */
+        final double[] bounds;
+
+        /**
+         * Caches the bounds of the given shapes (whose boxes must be set).
+         *
+         * @param list the shapes
+         */
+        Primitives(List<Intersectable> list) {
+            shapes = list.toArray(new Intersectable[0]);
+            count = shapes.length;
+            bounds = new double[count * 6];
+            for (int i = 0; i < count; ++i) {
+                BoundingBox box = shapes[i].getBoundingBox();
+                int o = i * 6;
+                bounds[o] = box.minX;
+                bounds[o + 1] = box.minY;
+                bounds[o + 2] = box.minZ;
+                bounds[o + 3] = box.maxX;
+                bounds[o + 4] = box.maxY;
+                bounds[o + 5] = box.maxZ;
+            }
+        }
+
+        /**
+         * Centroid coordinate of a shape along an axis.
+         *
+         * @param p    the shape index
+         * @param axis the axis (0 - X, 1 - Y, 2 - Z)
+         * @return the centroid coordinate
+         */
+        double centroid(int p, int axis) {
+            int o = p * 6 + axis;
+            return (bounds[o] + bounds[o + 3]) / 2.0;
+        }
+
+        /**
+         * Grows bounds to contain a shape.
+         *
+         * @param b the bounds
+         * @param p the shape index
+         */
+        void grow(double[] b, int p) {
+            int o = p * 6;
+            for (int a = 0; a < 3; ++a) {
+                if (bounds[o + a] < b[a]) b[a] = bounds[o + a];
+                if (bounds[o + a + 3] > b[a + 3]) b[a + 3] = bounds[o + a + 3];
+            }
+        }
+
+        /**
+         * Bounding box of the shapes {@code order[start..end)}.
+         *
+         * @param order indices of the shapes
+         * @param start first index (inclusive)
+         * @param end   last index (exclusive)
+         * @return the bounding box
+         */
+        BoundingBox bounds(int[] order, int start, int end) {
+            double[] b = new double[6];
+            resetBounds(b);
+            for (int i = start; i < end; ++i) grow(b, order[i]);
+            return new BoundingBox(b[0], b[3], b[1], b[4], b[2], b[5]);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package geometries;
+
+/**
+ * Node layouts of the compiled Bounding Volume Hierarchy
+ */
+public enum BVHLayout {
+   /** Nodes as built, each with its own bounds ({@link FlatBVH}) */
+   BINARY,
+   /** Collapsed 4-wide nodes with the bounds of the children stored together ({@link WideBVH}) */
+   WIDE
+}
@@ -1,8 +1,6 @@
 package geometries;
 
-import primitives.Point;
 import primitives.Ray;
-import primitives.Vector;
 
 import java.util.List;
 
@@ -57,31 +55,139 @@ public class BoundingBox {
      * Implements the slab method.
      */
     public boolean intersects(Ray ray) {
-        Point origin = ray.getHead();
-        Vector dir = ray.getDirection();
+        return intersects(ray, 0, Double.POSITIVE_INFINITY);
+    }
 
-        double ox = origin.getX();
-        double oy = origin.getY();
-        double oz = origin.getZ();
+    /**
+     * Tests whether the given ray intersects this bounding box within a range of distances.
+     * Implements the slab method with the inverse direction and the sign flags cached in the ray,
+     * so the near and far plane of each slab are selected without dividing or comparing.
+     * The range is narrowed by plain comparisons, which ignore the NaN produced by a zero
+     * direction component when the ray starts exactly on a slab plane - such a ray counts
+     * as inside that slab.
+     *
+     * @param ray  the ray
+     * @param tMin the start of the range
+     * @param tMax the end of the range
+     * @return true if the ray passes through the box somewhere between the distances
+     */
+    public boolean intersects(Ray ray, double tMin, double tMax) {
+        return entryDistance(ray, tMin, tMax) != Double.POSITIVE_INFINITY;
+    }
 
-        double dx = dir.getX();
-        double dy = dir.getY();
-        double dz = dir.getZ();
+    /**
+     * Calculates the distance along the ray at which it enters this box.
+     * Implements the slab method, like {@link #intersects(Ray, double, double)}.
+     *
+     * @param ray the ray
+     * @return the entry distance (0 if the ray starts inside the box),
+     * or positive infinity if the ray misses the box
+     */
+    public double entryDistance(Ray ray) {
+        return entryDistance(ray, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Calculates the distance at which the ray enters this box within a range of distances.
+     *
+     * @param ray  the ray
+     * @param tMin the start of the range
+     * @param tMax the end of the range
+     * @return the entry distance (tMin if the ray is already inside the box there),
+     * or positive infinity if the ray does not pass through the box within the range
+     */
+    public double entryDistance(Ray ray, double tMin, double tMax) {
+        return entryDistance(ray, minX, maxX, minY, maxY, minZ, maxZ, tMin, tMax);
+    }
+
+    /**
+     * Calculates the distance at which the ray enters a box given by its bounds within a range of distances,
+     * without creating the box. Implements the slab method, like {@link #entryDistance(Ray, double, double)}.
+     *
+     * @param ray  the ray
+     * @param minX the minimal X of the box
+     * @param maxX the maximal X of the box
+     * @param minY the minimal Y of the box
+     * @param maxY the maximal Y of the box
+     * @param minZ the minimal Z of the box
+     * @param maxZ the maximal Z of the box
+     * @param tMin the start of the range
+     * @param tMax the end of the range
+     * @return the entry distance (tMin if the ray is already inside the box there),
+     * or positive infinity if the ray does not pass through the box within the range
+     */
+    static double entryDistance(Ray ray, double minX, double maxX, double minY, double maxY,
+                                double minZ, double maxZ, double tMin, double tMax) {
+        double ox = ray.getHeadX();
+        double invD = ray.getInvDirX();
+        double near = ((ray.getSignX() == 0 ? minX : maxX) - ox) * invD;
+        double far = ((ray.getSignX() == 0 ? maxX : minX) - ox) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        double oy = ray.getHeadY();
+        invD = ray.getInvDirY();
+        near = ((ray.getSignY() == 0 ? minY : maxY) - oy) * invD;
+        far = ((ray.getSignY() == 0 ? maxY : minY) - oy) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        double oz = ray.getHeadZ();
+        invD = ray.getInvDirZ();
+        near = ((ray.getSignZ() == 0 ? minZ : maxZ) - oz) * invD;
+        far = ((ray.getSignZ() == 0 ? maxZ : minZ) - oz) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        return tMin <= tMax ? tMin : Double.POSITIVE_INFINITY;
+    }
 
-        double invDx = 1.0 / dx;
-        double invDy = 1.0 / dy;
-        double invDz = 1.0 / dz;
+    /**
+     * Returns the surface area of the box.
+     * Used by the Surface Area Heuristic to estimate the probability of a ray hitting the box.
+     *
+     * @return the surface area, or 0 for an empty (inverted) box
+     */
+    public double surfaceArea() {
+        double dx = maxX - minX;
+        double dy = maxY - minY;
+        double dz = maxZ - minZ;
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
 
-        double tx1 = (minX - ox) * invDx;
-        double tx2 = (maxX - ox) * invDx;
-        double ty1 = (minY - oy) * invDy;
-        double ty2 = (maxY - oy) * invDy;
-        double tz1 = (minZ - oz) * invDz;
-        double tz2 = (maxZ - oz) * invDz;
+    /**
+     * Constructs the smallest box containing both this box and the given one.
+     *
+     * @param other the other box
+     * @return a new box enclosing both boxes
+     */
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(
+                Math.min(minX, other.minX), Math.max(maxX, other.maxX),
+                Math.min(minY, other.minY), Math.max(maxY, other.maxY),
+                Math.min(minZ, other.minZ), Math.max(maxZ, other.maxZ));
+    }
 
-        double tmin = Math.max(Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2)), Math.min(tz1, tz2));
-        double tmax = Math.min(Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2)), Math.max(tz1, tz2));
+    /**
+     * Rounds a minimal bound to single precision downward, so the float box still contains the shapes.
+     *
+     * @param min the minimal bound
+     * @return the greatest float not greater than the bound
+     */
+    static float floatBelow(double min) {
+        float f = (float) min;
+        return f > min ? Math.nextDown(f) : f;
+    }
 
-        return tmax >= tmin && tmax >= 0;
+    /**
+     * Rounds a maximal bound to single precision upward, so the float box still contains the shapes.
+     *
+     * @param max the maximal bound
+     * @return the least float not less than the bound
+     */
+    static float floatAbove(double max) {
+        float f = (float) max;
+        return f < max ? Math.nextUp(f) : f;
     }
 }
@@ -0,0 +1,605 @@
+package geometries;
+
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compiled, immutable form of a Bounding Volume Hierarchy.
+ * <p>
+ * The tree of nested {@link Geometries} objects is flattened into primitive arrays:
+ * the bounds of all the nodes are stored contiguously in a {@code double[]} (or a {@code float[]}
+ * in single precision, see {@link #FlatBVH(Geometries, boolean)}), and the
+ * child and primitive ranges of each node in an {@code int[]}. The children of a node
+ * are stored next to each other, and so are the primitives of a node.
+ * Traversal uses an explicit stack of node indices instead of recursion, so a ray
+ * walks through arrays instead of chasing list nodes and virtual calls.
+ * The stack is a frame of the {@link TraversalStack} of the thread, so a query allocates no stack.
+ * Packets of coherent rays are traversed together, see {@link #intersect(Ray[], HitRecord[])},
+ * with the packet buffers of the thread.
+ * </p>
+ */
+public class FlatBVH extends Intersectable {
+    /** Amount of doubles per node in the bounds array */
+    private static final int BOUNDS_STRIDE = 6;
+    /** Amount of ints per node in the nodes array */
+    private static final int NODE_STRIDE = 4;
+    /** Maximal amount of rays traversed together, one bit of the active ray mask each */
+    static final int PACKET_SIZE = 64;
+    /** A packet with less active rays than this is considered diverged */
+    private static final int MIN_PACKET_RAYS = 4;
+
+    /**
+     * Bounds of each node: minX, minY, minZ, maxX, maxY, maxZ.
+     * Nodes containing unbounded shapes have infinite bounds.
+     * Null in single precision.
+     */
+    private final double[] bounds;
+
+    /**
+     * The bounds in single precision, rounded outward, or null in double precision.
+     */
+    private final float[] floatBounds;
+
+    /**
+     * Ranges of each node: first child node, amount of child nodes,
+     * first primitive, amount of primitives.
+     */
+    private final int[] nodes;
+
+    /**
+     * The primitives, grouped by their nodes.
+     */
+    private final Intersectable[] primitives;
+
+    /**
+     * The maximal depth of the traversal stack.
+     */
+    private final int stackSize;
+
+    /**
+     * Compiles the hierarchy of the given collection.
+     * Every nested {@link Geometries} becomes a node, any other shape becomes a primitive.
+     * The bounding boxes of the shapes must be already set.
+     *
+     * @param root the root collection of the hierarchy
+     */
+    public FlatBVH(Geometries root) {
+        this(root, false);
+    }
+
+    /**
+     * Compiles the hierarchy of the given collection, optionally storing the node bounds in single
+     * precision. Single precision halves the memory of the bounds and the memory traffic of the traversal;
+     * the bounds are rounded outward, so they still contain their shapes and no hit is lost,
+     * and the slab tests and the primitives are still calculated in double precision.
+     *
+     * @param root            the root collection of the hierarchy
+     * @param singlePrecision true to store the bounds as floats
+     */
+    public FlatBVH(Geometries root, boolean singlePrecision) {
+        // Breadth-first order keeps the children of each node contiguous
+        List<Geometries> order = new ArrayList<>();
+        List<Intersectable> prims = new ArrayList<>();
+        order.add(root);
+        List<int[]> ranges = new ArrayList<>();
+        for (int i = 0; i < order.size(); ++i) {
+            Geometries node = order.get(i);
+            int firstChild = order.size();
+            int firstPrim = prims.size();
+            for (Intersectable shape : node.getShapes()) {
+                if (shape instanceof Geometries child && !child.isFlattened()) order.add(child);
+                else prims.add(shape);
+            }
+            ranges.add(new int[]{firstChild, order.size() - firstChild, firstPrim, prims.size() - firstPrim});
+        }
+
+        int count = order.size();
+        nodes = new int[count * NODE_STRIDE];
+        double[] built = new double[count * BOUNDS_STRIDE];
+        primitives = prims.toArray(new Intersectable[0]);
+        for (int i = 0; i < count; ++i)
+            System.arraycopy(ranges.get(i), 0, nodes, i * NODE_STRIDE, NODE_STRIDE);
+
+        // Children come after their parents, so computing the bounds backwards is bottom-up
+        for (int i = count - 1; i >= 0; --i) computeBounds(built, i);
+        if (singlePrecision) {
+            bounds = null;
+            floatBounds = new float[built.length];
+            for (int i = 0; i < built.length; ++i)
+                floatBounds[i] = i % BOUNDS_STRIDE < 3 ? BoundingBox.floatBelow(built[i]) : BoundingBox.floatAbove(built[i]);
+        } else {
+            bounds = built;
+            floatBounds = null;
+        }
+
+        stackSize = stackDepth(0);
+        this.boundingBox = bound(0) == Double.NEGATIVE_INFINITY ? null
+                : new BoundingBox(bound(0), bound(3), bound(1), bound(4), bound(2), bound(5));
+    }
+
+    /**
+     * Checks whether the node bounds are stored in single precision.
+     *
+     * @return true if the bounds are floats
+     */
+    public boolean isSinglePrecision() {
+        return floatBounds != null;
+    }
+
+    /**
+     * Returns an element of the bounds array, in either precision.
+     */
+    private double bound(int i) {
+        return bounds != null ? bounds[i] : floatBounds[i];
+    }
+
+    /**
+     * Computes the bounds of a node from its primitives and its (already computed) children.
+     *
+     * @param bounds the bounds array
+     * @param node   the node index
+     */
+    private void computeBounds(double[] bounds, int node) {
+        int b = node * BOUNDS_STRIDE;
+        bounds[b] = bounds[b + 1] = bounds[b + 2] = Double.POSITIVE_INFINITY;
+        bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = Double.NEGATIVE_INFINITY;
+
+        int n = node * NODE_STRIDE;
+        for (int p = nodes[n + 2]; p < nodes[n + 2] + nodes[n + 3]; ++p) {
+            BoundingBox box = primitives[p].getBoundingBox();
+            if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) {
+                setUnbounded(bounds, b);
+                return;
+            }
+            grow(bounds, b, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+        }
+        for (int c = nodes[n]; c < nodes[n] + nodes[n + 1]; ++c) {
+            int cb = c * BOUNDS_STRIDE;
+            grow(bounds, b, bounds[cb], bounds[cb + 1], bounds[cb + 2], bounds[cb + 3], bounds[cb + 4], bounds[cb + 5]);
+        }
+    }
+
+    /**
+     * Sets infinite bounds so the node is never culled.
+     *
+     * @param bounds the bounds array
+     * @param b      the offset of the node in the bounds array
+     */
+    private static void setUnbounded(double[] bounds, int b) {
+        bounds[b] = bounds[b + 1] = bounds[b + 2] = Double.NEGATIVE_INFINITY;
+        bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Grows the bounds of a node to contain the given box.
+     */
+    private static void grow(double[] bounds, int b, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        bounds[b] = Math.min(bounds[b], minX);
+        bounds[b + 1] = Math.min(bounds[b + 1], minY);
+        bounds[b + 2] = Math.min(bounds[b + 2], minZ);
+        bounds[b + 3] = Math.max(bounds[b + 3], maxX);
+        bounds[b + 4] = Math.max(bounds[b + 4], maxY);
+        bounds[b + 5] = Math.max(bounds[b + 5], maxZ);
+    }
+
+    /**
+     * Calculates the stack depth needed to traverse the subtree of a node,
+     * where visiting a node pushes all of its children in any order.
+     *
+     * @param node the node index
+     * @return the stack depth
+     */
+    private int stackDepth(int node) {
+        int n = node * NODE_STRIDE;
+        int children = nodes[n + 1];
+        int depth = 1;
+        for (int i = 0; i < children; ++i)
+            // a child may be popped with all its siblings still below it
+            depth = Math.max(depth, children - 1 + stackDepth(nodes[n] + i));
+        return depth;
+    }
+
+    /**
+     * Returns the amount of nodes in the hierarchy.
+     *
+     * @return the amount of nodes
+     */
+    public int getNodeCount() {
+        return nodes.length / NODE_STRIDE;
+    }
+
+    @Override
+    public void setBoundingBox() {
+        // The bounds are compiled once and never change
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        double ox = ray.getHeadX();
+        double oy = ray.getHeadY();
+        double oz = ray.getHeadZ();
+
+        List<Intersection> intersections = null;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp++] = 0;
+            while (sp > base) {
+                int node = scratch.nodes[--sp];
+                if (nodeEntry(node, ray, ox, oy, oz, Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY) continue;
+
+                int n = node * NODE_STRIDE;
+                int primEnd = nodes[n + 2] + nodes[n + 3];
+                for (int p = nodes[n + 2]; p < primEnd; ++p) {
+                    List<Intersection> primIntersections = primitives[p].calculateIntersections(ray);
+                    if (primIntersections != null) {
+                        if (intersections == null) intersections = new LinkedList<>();
+                        intersections.addAll(primIntersections);
+                    }
+                }
+                int childEnd = nodes[n] + nodes[n + 1];
+                for (int c = nodes[n]; c < childEnd; ++c) scratch.nodes[sp++] = c;
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return intersections;
+    }
+
+    /**
+     * Finds the closest intersection, visiting the nodes nearest first.
+     * Each node is pushed with the distance at which the ray enters its bounds, and is skipped
+     * when popped if that distance is beyond the closest intersection found so far.
+     *
+     * @param ray the ray
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        double rootEntry = nodeEntry(0, ray, ray.getHeadX(), ray.getHeadY(), ray.getHeadZ(), hit.t);
+        return rootEntry < hit.t && intersect(0, rootEntry, ray, hit);
+    }
+
+    /**
+     * Finds the closest intersection in the subtree of a node, visiting the nodes nearest first.
+     *
+     * @param root      the root node of the subtree
+     * @param rootEntry the distance at which the ray enters the root node
+     * @param ray       the ray
+     * @param hit       the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    private boolean intersect(int root, double rootEntry, Ray ray, HitRecord hit) {
+        double ox = ray.getHeadX();
+        double oy = ray.getHeadY();
+        double oz = ray.getHeadZ();
+
+        boolean found = false;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp] = root;
+            scratch.entries[sp++] = rootEntry;
+            while (sp > base) {
+                --sp;
+                if (scratch.entries[sp] >= hit.t) continue;
+
+                int n = scratch.nodes[sp] * NODE_STRIDE;
+                int primEnd = nodes[n + 2] + nodes[n + 3];
+                for (int p = nodes[n + 2]; p < primEnd; ++p) {
+                    if (primitives[p].intersect(ray, hit)) found = true;
+                }
+
+                // Push the children farthest first, so the nearest one is popped next
+                int[] stack = scratch.nodes;
+                double[] entries = scratch.entries;
+                int first = sp;
+                int childEnd = nodes[n] + nodes[n + 1];
+                for (int c = nodes[n]; c < childEnd; ++c) {
+                    double entry = nodeEntry(c, ray, ox, oy, oz, hit.t);
+                    if (entry >= hit.t) continue;
+                    int j = sp++;
+                    for (; j > first && entries[j - 1] < entry; --j) {
+                        stack[j] = stack[j - 1];
+                        entries[j] = entries[j - 1];
+                    }
+                    stack[j] = c;
+                    entries[j] = entry;
+                }
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays, traversing the hierarchy with all the rays
+     * together (in chunks of up to 64 rays).
+     * Each node on the stack carries a mask of the active rays - the rays which enter it before
+     * their closest hit so far - and the entry distance of each of them. A node is culled only
+     * when it is missed by the whole packet, and the nodes are visited nearest first by the nearest
+     * entry among the active rays. When the packet diverges to a few active rays, they continue
+     * through the subtree one by one, which is cheaper than testing the whole packet against every node.
+     *
+     * @param rays the rays, coherent for the packet traversal to pay off
+     * @param hits the closest hit of each ray so far, updated if a closer one is found
+     */
+    @Override
+    protected void intersect(Ray[] rays, HitRecord[] hits) {
+        for (int first = 0; first < rays.length; first += PACKET_SIZE)
+            intersect(rays, hits, first, Math.min(rays.length, first + PACKET_SIZE));
+    }
+
+    /**
+     * Traverses the hierarchy with a packet of up to 64 rays.
+     *
+     * @param rays the rays
+     * @param hits the closest hit of each ray so far
+     * @param from the first ray of the packet
+     * @param to   the end of the packet (exclusive)
+     */
+    private void intersect(Ray[] rays, HitRecord[] hits, int from, int to) {
+        int count = to - from;
+        TraversalStack scratch = TraversalStack.get();
+        scratch.reservePacket(stackSize, count);
+        double[] ox = scratch.packetX;
+        double[] oy = scratch.packetY;
+        double[] oz = scratch.packetZ;
+        for (int r = 0; r < count; ++r) {
+            ox[r] = rays[from + r].getHeadX();
+            oy[r] = rays[from + r].getHeadY();
+            oz[r] = rays[from + r].getHeadZ();
+        }
+
+        // Rays from a common head with the same direction signs (e.g. primary rays) form a frustum,
+        // bounded by the intervals of their inverse direction components
+        Ray ray0 = rays[from];
+        boolean frustum = true;
+        double[] inv = scratch.packetInv;
+        inv[0] = inv[1] = inv[2] = Double.POSITIVE_INFINITY;
+        inv[3] = inv[4] = inv[5] = Double.NEGATIVE_INFINITY;
+        for (int r = 0; r < count && frustum; ++r) {
+            Ray ray = rays[from + r];
+            frustum = ox[r] == ox[0] && oy[r] == oy[0] && oz[r] == oz[0]
+                    && ray.getSignX() == ray0.getSignX() && ray.getSignY() == ray0.getSignY()
+                    && ray.getSignZ() == ray0.getSignZ()
+                    && Double.isFinite(ray.getInvDirX()) && Double.isFinite(ray.getInvDirY())
+                    && Double.isFinite(ray.getInvDirZ());
+            inv[0] = Math.min(inv[0], ray.getInvDirX());
+            inv[1] = Math.min(inv[1], ray.getInvDirY());
+            inv[2] = Math.min(inv[2], ray.getInvDirZ());
+            inv[3] = Math.max(inv[3], ray.getInvDirX());
+            inv[4] = Math.max(inv[4], ray.getInvDirY());
+            inv[5] = Math.max(inv[5], ray.getInvDirZ());
+        }
+
+        int[] stack = scratch.packetNodes;
+        long[] masks = scratch.packetMasks;
+        double[] nearest = scratch.packetNearest;
+        // The entry distances of the rays into each node on the stack, a row of the packet size per node
+        double[] entries = scratch.packetEntries;
+        double[] swap = scratch.packetSwap;
+        double[] range = scratch.packetRange;
+
+        long mask = 0;
+        for (int r = 0; r < count; ++r) {
+            entries[r] = nodeEntry(0, rays[from + r], ox[r], oy[r], oz[r], hits[from + r].t);
+            if (entries[r] < hits[from + r].t) mask |= 1L << r;
+        }
+        if (mask == 0) return;
+        stack[0] = 0;
+        masks[0] = mask;
+        int sp = 1;
+        while (sp > 0) {
+            --sp;
+            int node = stack[sp];
+            int row = sp * count;
+            // Drop the rays which found a hit closer than the node since it was pushed
+            mask = masks[sp];
+            for (long m = mask; m != 0; m &= m - 1) {
+                int r = Long.numberOfTrailingZeros(m);
+                if (entries[row + r] >= hits[from + r].t) mask &= ~(1L << r);
+            }
+            if (mask == 0) continue;
+
+            if (Long.bitCount(mask) < MIN_PACKET_RAYS) {
+                // The packet diverged - the remaining rays continue one by one
+                for (long m = mask; m != 0; m &= m - 1) {
+                    int r = Long.numberOfTrailingZeros(m);
+                    intersect(node, entries[row + r], rays[from + r], hits[from + r]);
+                }
+                continue;
+            }
+
+            int n = node * NODE_STRIDE;
+            int primEnd = nodes[n + 2] + nodes[n + 3];
+            for (int p = nodes[n + 2]; p < primEnd; ++p) {
+                for (long m = mask; m != 0; m &= m - 1) {
+                    int r = Long.numberOfTrailingZeros(m);
+                    primitives[p].intersect(rays[from + r], hits[from + r]);
+                }
+            }
+
+            // Push the children entered by any active ray, farthest first
+            double tMin = Double.POSITIVE_INFINITY, tMax = 0;
+            if (frustum)
+                for (long m = mask; m != 0; m &= m - 1) {
+                    double t = hits[from + Long.numberOfTrailingZeros(m)].t;
+                    tMin = Math.min(tMin, t);
+                    tMax = Math.max(tMax, t);
+                }
+            int first = sp;
+            int childEnd = nodes[n] + nodes[n + 1];
+            for (int c = nodes[n]; c < childEnd; ++c) {
+                int childRow = sp * count;
+                long childMask = 0;
+                double childNearest = Double.POSITIVE_INFINITY;
+                if (frustum) {
+                    frustumEntry(c, ray0, ox[0], oy[0], oz[0], inv, range);
+                    // The whole packet misses the node
+                    if (range[0] > Math.min(range[3], tMax)) continue;
+                    // The whole packet enters the node before any hit - the lower bound of the entries will do
+                    if (range[1] <= range[2] && range[1] < tMin) childMask = mask;
+                }
+                if (childMask != 0) {
+                    childNearest = range[0];
+                    for (long m = mask; m != 0; m &= m - 1)
+                        entries[childRow + Long.numberOfTrailingZeros(m)] = range[0];
+                } else for (long m = mask; m != 0; m &= m - 1) {
+                    int r = Long.numberOfTrailingZeros(m);
+                    double entry = nodeEntry(c, rays[from + r], ox[r], oy[r], oz[r], hits[from + r].t);
+                    entries[childRow + r] = entry;
+                    if (entry < hits[from + r].t) {
+                        childMask |= 1L << r;
+                        childNearest = Math.min(childNearest, entry);
+                    }
+                }
+                if (childMask == 0) continue;
+                stack[sp] = c;
+                masks[sp] = childMask;
+                nearest[sp] = childNearest;
+                for (int j = sp++; j > first && nearest[j - 1] < nearest[j]; --j) {
+                    int tmpNode = stack[j];
+                    stack[j] = stack[j - 1];
+                    stack[j - 1] = tmpNode;
+                    long tmpMask = masks[j];
+                    masks[j] = masks[j - 1];
+                    masks[j - 1] = tmpMask;
+                    double tmpNearest = nearest[j];
+                    nearest[j] = nearest[j - 1];
+                    nearest[j - 1] = tmpNearest;
+                    System.arraycopy(entries, j * count, swap, 0, count);
+                    System.arraycopy(entries, (j - 1) * count, entries, j * count, count);
+                    System.arraycopy(swap, 0, entries, (j - 1) * count, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Slab test of a frustum of rays against the bounds of a node, by interval arithmetic:
+     * the entry into each slab and the exit from it are bounded over the whole interval
+     * of the inverse direction component.
+     *
+     * @param ray0  any ray of the frustum, for the direction signs
+     * @param inv   the intervals of the inverse direction components - minX, minY, minZ, maxX, maxY, maxZ
+     * @param range output - the bounds of the entry distance of the rays into the node (lower, upper)
+     *              and of their exit distance from it (lower, upper)
+     */
+    private void frustumEntry(int node, Ray ray0, double ox, double oy, double oz, double[] inv, double[] range) {
+        int b = node * BOUNDS_STRIDE;
+        double entryLo = 0, entryHi = 0;
+        double exitLo = Double.POSITIVE_INFINITY, exitHi = Double.POSITIVE_INFINITY;
+
+        int s = 3 * ray0.getSignX();
+        double near = bound(b + s) - ox;
+        double far = bound(b + 3 - s) - ox;
+        entryLo = Math.max(entryLo, Math.min(near * inv[0], near * inv[3]));
+        entryHi = Math.max(entryHi, Math.max(near * inv[0], near * inv[3]));
+        exitLo = Math.min(exitLo, Math.min(far * inv[0], far * inv[3]));
+        exitHi = Math.min(exitHi, Math.max(far * inv[0], far * inv[3]));
+
+        s = 3 * ray0.getSignY();
+        near = bound(b + 1 + s) - oy;
+        far = bound(b + 4 - s) - oy;
+        entryLo = Math.max(entryLo, Math.min(near * inv[1], near * inv[4]));
+        entryHi = Math.max(entryHi, Math.max(near * inv[1], near * inv[4]));
+        exitLo = Math.min(exitLo, Math.min(far * inv[1], far * inv[4]));
+        exitHi = Math.min(exitHi, Math.max(far * inv[1], far * inv[4]));
+
+        s = 3 * ray0.getSignZ();
+        near = bound(b + 2 + s) - oz;
+        far = bound(b + 5 - s) - oz;
+        entryLo = Math.max(entryLo, Math.min(near * inv[2], near * inv[5]));
+        entryHi = Math.max(entryHi, Math.max(near * inv[2], near * inv[5]));
+        exitLo = Math.min(exitLo, Math.min(far * inv[2], far * inv[5]));
+        exitHi = Math.min(exitHi, Math.max(far * inv[2], far * inv[5]));
+
+        range[0] = entryLo;
+        range[1] = entryHi;
+        range[2] = exitLo;
+        range[3] = exitHi;
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque primitive closer than the given distance.
+     * Nodes entered beyond the distance are skipped, and the traversal stops at the first
+     * opaque blocker, without any ordering of the nodes.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        double ox = ray.getHeadX();
+        double oy = ray.getHeadY();
+        double oz = ray.getHeadZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp++] = 0;
+            while (sp > base) {
+                int node = scratch.nodes[--sp];
+                if (nodeEntry(node, ray, ox, oy, oz, maxDistance) >= maxDistance) continue;
+
+                int n = node * NODE_STRIDE;
+                int primEnd = nodes[n + 2] + nodes[n + 3];
+                for (int p = nodes[n + 2]; p < primEnd; ++p)
+                    if (primitives[p].isOccluded(ray, maxDistance, transparent)) return true;
+                int childEnd = nodes[n] + nodes[n + 1];
+                for (int c = nodes[n]; c < childEnd; ++c) scratch.nodes[sp++] = c;
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return false;
+    }
+
+    /**
+     * Slab test of a ray against the bounds of a node, using the inverse direction and the sign flags
+     * cached in the ray (see {@link BoundingBox#entryDistance(Ray, double, double)}).
+     *
+     * @param tMax the distance beyond which the node is considered missed
+     * @return the distance at which the ray enters the node bounds (0 if it starts inside),
+     * or positive infinity if the ray misses them before the distance
+     */
+    private double nodeEntry(int node, Ray ray, double ox, double oy, double oz, double tMax) {
+        int b = node * BOUNDS_STRIDE;
+        double tMin = 0;
+
+        int s = 3 * ray.getSignX();
+        double invD = ray.getInvDirX();
+        double near = (bound(b + s) - ox) * invD;
+        double far = (bound(b + 3 - s) - ox) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        s = 3 * ray.getSignY();
+        invD = ray.getInvDirY();
+        near = (bound(b + 1 + s) - oy) * invD;
+        far = (bound(b + 4 - s) - oy) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        s = 3 * ray.getSignZ();
+        invD = ray.getInvDirZ();
+        near = (bound(b + 2 + s) - oz) * invD;
+        far = (bound(b + 5 - s) - oz) * invD;
+        if (near > tMin) tMin = near;
+        if (far < tMax) tMax = far;
+
+        return tMin <= tMax ? tMin : Double.POSITIVE_INFINITY;
+    }
+}
@@ -2,10 +2,11 @@ package geometries;
 
 import primitives.Ray;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 
@@ -18,90 +19,24 @@ import java.util.List;
 public class Geometries extends Intersectable {
     private enum AXIS {X, Y, Z};
 
+    /**
+     * Sets the box of the collection to the union of the boxes of its shapes.
+     * A collection containing a shape without a finite box (e.g. a plane) gets no box,
+     * so it is never culled. BVH builders keep such shapes out of the hierarchy.
+     */
     @Override
     public void setBoundingBox() {
-        if (shapes.isEmpty()) return;
-
-        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
-        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
-        double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
-
-        for (Intersectable shape : shapes) {
-            shape.setBoundingBox();
-            BoundingBox box = shape.getBoundingBox();
-            if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) continue;
-            minX = Math.min(minX, box.minX);
-            maxX = Math.max(maxX, box.maxX);
-            minY = Math.min(minY, box.minY);
-            maxY = Math.max(maxY, box.maxY);
-            minZ = Math.min(minZ, box.minZ);
-            maxZ = Math.max(maxZ, box.maxZ);
-
-        }
-
-        this.boundingBox = new BoundingBox(minX, maxX, minY, maxY, minZ, maxZ);
+        updateBounds(false);
     }
 
     /**
      * Builds a Bounding Volume Hierarchy (BVH) for the geometries.
-     * This method recursively divides the shapes into two halves based on the longest axis
+     * The shapes are recursively divided into two halves based on the longest axis
      * of their bounding box, creating a hierarchical structure that optimizes intersection tests.
+     * See {@link MedianBuilder}.
      */
     public void buildBVH() {
-        setBoundingBox();
-
-        if (shapes.size() <= 2) return;
-
-        // Calculate the bounding box of the current shapes
-        double dx = boundingBox.maxX - boundingBox.minX;
-        double dy = boundingBox.maxY - boundingBox.minY;
-        double dz = boundingBox.maxZ - boundingBox.minZ;
-
-        int axis = 0;
-        if (dy > dx && dy > dz) axis = 1;
-        else if (dz > dx && dz > dy) axis = 2;
-
-        final int sortAxis = axis;
-
-        // Sort the shapes based on the longest axis of the bounding box
-        shapes.sort((a, b) -> {
-            double aCoord = 0, bCoord = 0;
-            switch (sortAxis) {
-                case 0 -> {
-                    aCoord = a.getBoundingBox().getCentroidX();
-                    bCoord = b.getBoundingBox().getCentroidX();
-                }
-                case 1 -> {
-                    aCoord = a.getBoundingBox().getCentroidY();
-                    bCoord = b.getBoundingBox().getCentroidY();
-                }
-                case 2 -> {
-                    aCoord = a.getBoundingBox().getCentroidZ();
-                    bCoord = b.getBoundingBox().getCentroidZ();
-                }
-            }
-            return Double.compare(aCoord, bCoord);
-        });
-
-        // Split the shapes into two halves
-        int mid = shapes.size() / 2;
-        List<Intersectable> leftList = new ArrayList<>(shapes.subList(0, mid));
-        List<Intersectable> rightList = new ArrayList<>(shapes.subList(mid, shapes.size()));
-
-        // Create new Geometries for left and right halves
-        Geometries left = new Geometries();
-        Geometries right = new Geometries();
-        left.add(leftList.toArray(new Intersectable[0]));
-        right.add(rightList.toArray(new Intersectable[0]));
-
-        // Recursively build BVH for left and right geometries
-        left.buildBVH();
-        right.buildBVH();
-
-        // Clear the current shapes and add the left and right geometries
-        shapes.clear();
-        shapes.add(left);
-        shapes.add(right);
+        new MedianBuilder().build(this);
     }
 
     /**
@@ -109,6 +44,11 @@ public class Geometries extends Intersectable {
      */
     private final List<Intersectable> shapes = new LinkedList<>();
 
+    /**
+     * The compiled form of the hierarchy, or null if the collection is not flattened.
+     */
+    private Intersectable flat = null;
+
     /**
      * Constructs a Geometries object and initializes it with the given geometries.
      * This allows creating a composite of multiple geometric shapes.
@@ -127,6 +67,174 @@ public class Geometries extends Intersectable {
      */
     public void add(Intersectable... geometries) {
         Collections.addAll(shapes, geometries);
+        flat = null;
+    }
+
+    /**
+     * Compiles the current hierarchy of the collection into a {@link FlatBVH}.
+     * From now on intersections are calculated by the compiled form,
+     * until the collection is changed by adding shapes or rebuilding the hierarchy.
+     */
+    public void flatten() {
+        flatten(BVHLayout.BINARY);
+    }
+
+    /**
+     * Compiles the current hierarchy of the collection into the given node layout.
+     *
+     * @param layout {@link BVHLayout#BINARY} for a {@link FlatBVH},
+     *               {@link BVHLayout#WIDE} for a 4-wide {@link WideBVH}
+     */
+    public void flatten(BVHLayout layout) {
+        flatten(layout, false);
+    }
+
+    /**
+     * Compiles the current hierarchy of the collection into the given node layout,
+     * optionally storing the node bounds in single precision to halve their memory.
+     *
+     * @param layout          {@link BVHLayout#BINARY} for a {@link FlatBVH},
+     *                        {@link BVHLayout#WIDE} for a 4-wide {@link WideBVH}
+     * @param singlePrecision true to store the node bounds as floats
+     */
+    public void flatten(BVHLayout layout, boolean singlePrecision) {
+        setBoundingBox();
+        flat = switch (layout) {
+            case BINARY -> new FlatBVH(this, singlePrecision);
+            case WIDE -> new WideBVH(this, singlePrecision);
+        };
+    }
+
+    /**
+     * Checks whether the collection is compiled into a flat form.
+     *
+     * @return true if intersections are calculated by the compiled form
+     */
+    public boolean isFlattened() {
+        return flat != null;
+    }
+
+    /**
+     * Returns the layout of the compiled form.
+     *
+     * @return the layout, or null if the collection is not flattened
+     */
+    BVHLayout getLayout() {
+        if (flat == null) return null;
+        return flat instanceof WideBVH ? BVHLayout.WIDE : BVHLayout.BINARY;
+    }
+
+    /**
+     * Checks whether the compiled form stores its node bounds in single precision.
+     *
+     * @return true if the collection is flattened in single precision
+     */
+    boolean isSinglePrecision() {
+        return flat instanceof FlatBVH f ? f.isSinglePrecision() : flat instanceof WideBVH w && w.isSinglePrecision();
+    }
+
+    /**
+     * Drops the compiled form, used when the hierarchy is reorganized.
+     */
+    void unflatten() {
+        flat = null;
+    }
+
+    /**
+     * Refits the hierarchy after its shapes moved: the bounding boxes are recalculated bottom-up
+     * through the existing tree in linear time, without reorganizing it.
+     * A collection containing a shape without a finite box gets no box, so it is never culled.
+     * Compiled forms in the tree are recompiled with their layout.
+     * The quality of the refitted tree may degrade, see {@link #calculateSAHCost()}.
+     */
+    public void refit() {
+        updateBounds(true);
+    }
+
+    /**
+     * Recalculates the box of the collection from the boxes of its shapes, bottom-up.
+     *
+     * @param refit true to refit nested collections and recompile compiled forms,
+     *              false to only set the boxes
+     */
+    private void updateBounds(boolean refit) {
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        boolean unbounded = shapes.isEmpty();
+
+        for (Intersectable shape : shapes) {
+            if (refit && shape instanceof Geometries child) child.refit();
+            else shape.setBoundingBox();
+            BoundingBox box = shape.getBoundingBox();
+            if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) {
+                unbounded = true;
+                continue;
+            }
+            minX = Math.min(minX, box.minX);
+            maxX = Math.max(maxX, box.maxX);
+            minY = Math.min(minY, box.minY);
+            maxY = Math.max(maxY, box.maxY);
+            minZ = Math.min(minZ, box.minZ);
+            maxZ = Math.max(maxZ, box.maxZ);
+        }
+        this.boundingBox = unbounded ? null : new BoundingBox(minX, maxX, minY, maxY, minZ, maxZ);
+
+        if (refit && flat != null) {
+            boolean singlePrecision = isSinglePrecision();
+            flat = getLayout() == BVHLayout.WIDE ? new WideBVH(this, singlePrecision) : new FlatBVH(this, singlePrecision);
+        }
+    }
+
+    /**
+     * Estimates the cost of tracing a ray through the hierarchy by the Surface Area Heuristic:
+     * every collection costs a box test plus a test of each of its direct shapes, weighted by
+     * the probability of a ray hitting its box (its surface area relative to the root).
+     * Comparing the cost of a refitted tree to its cost when built tells how much it degraded.
+     *
+     * @return the estimated cost, in shape intersections per ray
+     */
+    public double calculateSAHCost() {
+        double rootArea = 0;
+        if (boundingBox != null) rootArea = boundingBox.surfaceArea();
+        else {
+            // The root has unbounded shapes - relate to the bounds of the finite ones
+            BoundingBox union = null;
+            for (Intersectable shape : shapes) {
+                BoundingBox box = shape.getBoundingBox();
+                if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) continue;
+                union = union == null ? box : union.union(box);
+            }
+            if (union != null) rootArea = union.surfaceArea();
+        }
+        return rootArea > 0 ? sahCost(rootArea) : shapes.size();
+    }
+
+    /**
+     * Recursive part of {@link #calculateSAHCost()}.
+     *
+     * @param rootArea the surface area of the root box
+     * @return the estimated cost of the subtree
+     */
+    private double sahCost(double rootArea) {
+        int direct = 0;
+        double cost = 0;
+        for (Intersectable shape : shapes) {
+            if (shape instanceof Geometries child && !child.isFlattened()) cost += child.sahCost(rootArea);
+            else ++direct;
+        }
+        // A collection without a box is always visited
+        double probability = boundingBox == null ? 1 : boundingBox.surfaceArea() / rootArea;
+        return cost + probability * (1 + direct);
+    }
+
+    /**
+     * Returns the live list of the shapes in the collection, used by the BVH builders.
+     *
+     * @return the list of shapes
+     */
+    List<Intersectable> getShapes() {
+        return shapes;
     }
 
     /**
@@ -139,6 +247,9 @@ public class Geometries extends Intersectable {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        if (flat != null) {
+            return flat.calculateIntersections(ray);
+        }
         if (this.boundingBox != null && !this.boundingBox.intersects(ray)) {
             return null;
         }
@@ -147,7 +258,7 @@ public class Geometries extends Intersectable {
         }
         List<Intersection> intersections = null;  // Initialize as null
         for (Intersectable shape : shapes) {
-            if (shape.getBoundingBox() != null && !shape.getBoundingBox().intersects(ray)) {
+            if (shape.entryDistance(ray, 0, Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY) {
                 continue;  // Skip shapes that do not intersect with the ray
             }
             List<Intersection> shapeIntersections = shape.calculateIntersections(ray);
@@ -161,4 +272,120 @@ public class Geometries extends Intersectable {
         }
         return intersections;  // Return null if no intersections
     }
+
+    /**
+     * Finds the closest intersection of the ray with the geometries in the collection.
+     * The children are visited in the order of the distance at which the ray enters their
+     * bounding boxes, and a child whose box is entered beyond the closest intersection found
+     * so far is skipped together with all the farther ones.
+     *
+     * @param ray the ray to intersect with the geometries
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        if (flat != null) {
+            return flat.intersect(ray, hit);
+        }
+        if (this.boundingBox != null && !this.boundingBox.intersects(ray, 0, hit.t)) {
+            return false;
+        }
+        int count = shapes.size();
+        if (count == 0) {
+            return false;
+        }
+        if (count == 1) {
+            return shapes.getFirst().intersect(ray, hit);
+        }
+        if (count == 2) {
+            // The common case of a BVH node - no need for the arrays
+            Intersectable first = shapes.getFirst();
+            Intersectable second = shapes.getLast();
+            double firstEntry = entryDistance(first, ray);
+            double secondEntry = entryDistance(second, ray);
+            if (secondEntry < firstEntry) {
+                Intersectable tmp = first;
+                first = second;
+                second = tmp;
+                double tmpEntry = firstEntry;
+                firstEntry = secondEntry;
+                secondEntry = tmpEntry;
+            }
+            boolean found = firstEntry < hit.t && first.intersect(ray, hit);
+            return secondEntry < hit.t && second.intersect(ray, hit) || found;
+        }
+
+        // Sort the children by their entry distance (insertion sort - there are very few of them),
+        // in a frame of the traversal stack of the thread
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.push(count);
+        try {
+            Intersectable[] children = scratch.shapes;
+            double[] entries = scratch.entries;
+            int end = base;
+            for (Intersectable shape : shapes) {
+                double entry = entryDistance(shape, ray);
+                int j = end++;
+                for (; j > base && entries[j - 1] > entry; --j) {
+                    children[j] = children[j - 1];
+                    entries[j] = entries[j - 1];
+                }
+                children[j] = shape;
+                entries[j] = entry;
+            }
+
+            boolean found = false;
+            for (int i = base; i < end && scratch.entries[i] < hit.t; ++i) {
+                if (scratch.shapes[i].intersect(ray, hit)) found = true;
+            }
+            return found;
+        } finally {
+            // Do not keep the shapes reachable from the thread
+            Arrays.fill(scratch.shapes, base, base + count, null);
+            scratch.pop(base);
+        }
+    }
+
+    @Override
+    protected void intersect(Ray[] rays, HitRecord[] hits) {
+        if (flat != null) flat.intersect(rays, hits);
+        else super.intersect(rays, hits);
+    }
+
+    /**
+     * Distance at which the ray enters the box of a shape, zero for a shape without a box.
+     */
+    private static double entryDistance(Intersectable shape, Ray ray) {
+        return shape.entryDistance(ray, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque geometry of the collection closer than
+     * the given distance. Children whose bounding box is entered beyond the distance are skipped,
+     * and the search stops at the first opaque blocker.
+     *
+     * @param ray         the ray to intersect with the geometries
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        if (flat != null) {
+            return flat.isOccluded(ray, maxDistance, transparent);
+        }
+        if (this.boundingBox != null && !this.boundingBox.intersects(ray, 0, maxDistance)) {
+            return false;
+        }
+        for (Intersectable shape : shapes) {
+            if (shape.entryDistance(ray, 0, maxDistance) == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (shape.isOccluded(ray, maxDistance, transparent)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
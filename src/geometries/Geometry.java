@@ -2,8 +2,11 @@ package geometries;
 
 import primitives.Color;
 import primitives.Point;
+import primitives.Ray;
 import primitives.Vector;
 
+import java.util.function.Consumer;
+
 /**
  * Abstract class representing a geometric object in 3D space.
  * Provides methods for material and emission color management,
@@ -60,6 +63,22 @@ public abstract class Geometry extends Intersectable {
         return this;
     }
 
+    /**
+     * Checks whether the ray is blocked by the geometry closer than the given distance.
+     * An opaque geometry is checked through {@link #intersect(Ray, HitRecord)} with the record of the thread,
+     * without building an intersection list; a transparent one reports its intersections to the consumer.
+     *
+     * @param ray         the ray to intersect with the geometry
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if the geometry is opaque and intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        if (!material.isOpaque()) return super.isOccludedHelper(ray, maxDistance, transparent);
+        return intersect(ray, HitRecord.get().reset(maxDistance));
+    }
+
     /**
      * Calculates the normal vector to the geometry at the specified point.
      *
@@ -0,0 +1,117 @@
+package geometries;
+
+import geometries.Intersectable.Intersection;
+import primitives.Ray;
+import primitives.Transform;
+
+import java.util.Arrays;
+
+/**
+ * Mutable record of the closest hit found so far along a ray.
+ * <p>
+ * The closest-hit query passes a single record through the whole traversal, and every
+ * primitive which finds a closer hit overwrites it with plain values instead of creating
+ * points, lists or intersection objects. The {@link Intersection} is materialized
+ * only once, for the final hit. One record (and one array of records for packets of rays)
+ * is reused per thread.
+ * </p>
+ * A record is in use during a single query, so it must not be taken again while intersecting.
+ */
+public class HitRecord {
+    /**
+     * Records of the threads.
+     */
+    private static final ThreadLocal<HitRecord> RECORDS = ThreadLocal.withInitial(HitRecord::new);
+
+    /**
+     * Records of the packets of the threads.
+     */
+    private static final ThreadLocal<HitRecord[]> PACKETS = ThreadLocal.withInitial(() -> new HitRecord[0]);
+
+    /**
+     * Distance of the hit along the ray, or the distance limit while there is no hit.
+     */
+    public double t;
+
+    /**
+     * The geometry hit, or null if there is no hit yet.
+     */
+    public Geometry geometry;
+
+    /**
+     * Barycentric coordinates of the hit on a triangle (relative to its second and third vertices),
+     * zero for other geometries.
+     */
+    public double u, v;
+
+    /**
+     * The transformation from the object space of the geometry to the world, or null if not instanced.
+     */
+    public Transform transform;
+
+    /**
+     * Returns the record of the current thread.
+     *
+     * @return the record
+     */
+    static HitRecord get() {
+        return RECORDS.get();
+    }
+
+    /**
+     * Returns the records of a packet of rays of the current thread.
+     *
+     * @param count the amount of rays in the packet
+     * @return at least the given amount of records
+     */
+    static HitRecord[] get(int count) {
+        HitRecord[] records = PACKETS.get();
+        if (records.length < count) {
+            int old = records.length;
+            records = Arrays.copyOf(records, count);
+            for (int i = old; i < count; ++i) records[i] = new HitRecord();
+            PACKETS.set(records);
+        }
+        return records;
+    }
+
+    /**
+     * Clears the record for a new query.
+     *
+     * @param maxDistance the distance beyond which hits are ignored
+     * @return this record
+     */
+    public HitRecord reset(double maxDistance) {
+        t = maxDistance;
+        geometry = null;
+        u = v = 0;
+        transform = null;
+        return this;
+    }
+
+    /**
+     * Records a hit, if it is closer than the current one.
+     *
+     * @param t        the distance of the hit along the ray
+     * @param geometry the geometry hit
+     * @return true if the hit was recorded
+     */
+    public boolean record(double t, Geometry geometry) {
+        if (t >= this.t) return false;
+        this.t = t;
+        this.geometry = geometry;
+        u = v = 0;
+        transform = null;
+        return true;
+    }
+
+    /**
+     * Creates the intersection object of the recorded hit.
+     *
+     * @param ray the ray of the query
+     * @return the intersection
+     */
+    public Intersection toIntersection(Ray ray) {
+        return new Intersection(geometry, ray, t, transform);
+    }
+}
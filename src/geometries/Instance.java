@@ -0,0 +1,194 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.ScratchRay;
+import primitives.Transform;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A placed copy of a shared collection of geometries.
+ * <p>
+ * The shared collection is defined once in its own object space, usually with its own
+ * prebuilt BVH, and any amount of instances place it in the scene with an affine transformation.
+ * A ray is moved into the object space of the collection by the inverse transformation,
+ * so the shared hierarchy is traversed as is, and the hits are moved back to the world.
+ * </p>
+ * Instances are bounded by the transformed box of the collection, so a BVH built over
+ * the scene becomes a top-level hierarchy of instances above the shared bottom-level hierarchies.
+ * The shared collection must not be changed while instanced.
+ */
+public class Instance extends Intersectable {
+    /**
+     * The shared collection, in its object space.
+     */
+    private final Geometries shared;
+
+    /**
+     * The transformation from the object space of the collection to the world.
+     */
+    private Transform transform;
+
+    /**
+     * Constructs an instance of a shared collection.
+     *
+     * @param shared    the shared collection
+     * @param transform the transformation from the object space of the collection to the world
+     */
+    public Instance(Geometries shared, Transform transform) {
+        this.shared = shared;
+        this.transform = transform;
+    }
+
+    /**
+     * Returns the shared collection.
+     *
+     * @return the shared collection
+     */
+    public Geometries getShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the transformation of the instance.
+     *
+     * @return the transformation from the object space of the collection to the world
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Moves the instance, e.g. for the next frame of an animation.
+     * The box is not updated - the hierarchy containing the instance must be refitted
+     * (see {@link Geometries#refit()}) before rendering.
+     *
+     * @param transform the new transformation from the object space of the collection to the world
+     * @return this instance
+     */
+    public Instance setTransform(Transform transform) {
+        this.transform = transform;
+        return this;
+    }
+
+    /**
+     * Sets the box of the instance to the world bounds of the transformed box of the collection.
+     * The box of the shared collection is calculated once, by the first instance that needs it.
+     */
+    @Override
+    public void setBoundingBox() {
+        BoundingBox box = shared.getBoundingBox();
+        if (box == null) {
+            shared.setBoundingBox();
+            box = shared.getBoundingBox();
+        }
+        if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) {
+            boundingBox = null;
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; ++corner) {
+            Point p = transform.transformPoint(new Point(
+                    (corner & 1) == 0 ? box.minX : box.maxX,
+                    (corner & 2) == 0 ? box.minY : box.maxY,
+                    (corner & 4) == 0 ? box.minZ : box.maxZ));
+            minX = Math.min(minX, p.getX());
+            maxX = Math.max(maxX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxY = Math.max(maxY, p.getY());
+            minZ = Math.min(minZ, p.getZ());
+            maxZ = Math.max(maxZ, p.getZ());
+        }
+        boundingBox = new BoundingBox(minX, maxX, minY, maxY, minZ, maxZ);
+    }
+
+    /**
+     * Moves a ray into the object space of the collection.
+     *
+     * @param ray the ray in world space
+     * @return the ray in object space
+     */
+    private Ray toObject(Ray ray) {
+        return new Ray(transform.inversePoint(ray.getHead()), transform.inverseVector(ray.getDirection()));
+    }
+
+
+    /**
+     * Moves an intersection found in the object space of the collection back to the world.
+     *
+     * @param intersection the intersection in object space
+     * @return the intersection in world space
+     */
+    private Intersection toWorld(Intersection intersection) {
+        Transform total = intersection.transform == null ? transform : intersection.transform.then(transform);
+        return new Intersection(intersection.geometry, transform.transformPoint(intersection.getPoint()), total);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        List<Intersection> intersections = shared.calculateIntersections(toObject(ray));
+        if (intersections == null) return null;
+        List<Intersection> result = new LinkedList<>();
+        for (Intersection intersection : intersections) result.add(toWorld(intersection));
+        return result;
+    }
+
+    /**
+     * Intersects the shared collection in its object space with the same hit record.
+     * The ray is moved into a scratch ray of the thread instead of a new one.
+     * The distances along the object space ray are scaled by the transformation, so the
+     * distance in the record is converted to object space for the search and back after it.
+     *
+     * @param ray the ray in world space
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        TraversalStack scratch = TraversalStack.get();
+        ScratchRay local = scratch.pushRay();
+        try {
+            double limit = hit.t;
+            double scale = transform.inverseRay(ray, local);
+            hit.t = limit * scale;
+            if (!shared.intersect(local, hit)) {
+                hit.t = limit;
+                return false;
+            }
+            hit.t /= scale;
+            hit.transform = hit.transform == null ? transform : hit.transform.then(transform);
+            return true;
+        } finally {
+            scratch.popRay();
+        }
+    }
+
+    /**
+     * Checks the shared collection for blockers in its object space, along a scratch ray of the thread.
+     * The transparent intersections are moved to the world before they are passed on,
+     * so none of them refers to the scratch ray afterwards.
+     *
+     * @param ray         the ray in world space
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        TraversalStack scratch = TraversalStack.get();
+        ScratchRay local = scratch.pushRay();
+        try {
+            double scale = transform.inverseRay(ray, local);
+            return shared.isOccluded(local, maxDistance == Double.POSITIVE_INFINITY ? maxDistance : maxDistance * scale,
+                    transparent == null ? null : intersection -> transparent.accept(toWorld(intersection)));
+        } finally {
+            scratch.popRay();
+        }
+    }
+}
@@ -2,8 +2,10 @@ package geometries;
 
 import primitives.Point;
 import primitives.Ray;
+import primitives.Transform;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Abstract class representing an intersectable geometry in 3D space.
@@ -17,6 +19,22 @@ public abstract class Intersectable {
     }
 
     public abstract void setBoundingBox();
+
+    /**
+     * Calculates the distance at which the ray enters the bounding box of the shape within a range of distances.
+     * Composites use it to cull and order their children. Shapes which do not store their box
+     * override it to test their bounds without creating the box.
+     *
+     * @param ray  the ray
+     * @param tMin the start of the range
+     * @param tMax the end of the range
+     * @return the entry distance, tMin for a shape without a box (it is never culled),
+     * or positive infinity if the ray does not pass through the box within the range
+     */
+    protected double entryDistance(Ray ray, double tMin, double tMax) {
+        BoundingBox box = getBoundingBox();
+        return box == null ? tMin : box.entryDistance(ray, tMin, tMax);
+    }
     /**
      * Finds the intersection points of a given ray with the geometry.
      * Uses the abstract method {@link #calculateIntersections(Ray)} and extracts the points.
@@ -26,7 +44,7 @@ public abstract class Intersectable {
      */
     public final List<Point> findIntersections(Ray ray) {
         var list = calculateIntersections(ray);
-        return list == null ? null : list.stream().map(intersection -> intersection.point).toList();
+        return list == null ? null : list.stream().map(Intersection::getPoint).toList();
     }
 
     /**
@@ -48,10 +66,144 @@ public abstract class Intersectable {
         return calculateIntersectionsHelper(ray);
     }
 
+    /**
+     * Finds the closest intersection of the ray with the geometry.
+     *
+     * @param ray the ray to intersect with the geometry
+     * @return the closest intersection, or null if there are no intersections
+     */
+    public final Intersection findClosestIntersection(Ray ray) {
+        return findClosestIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the geometry,
+     * which is closer to the ray head than the given distance.
+     * The search goes through {@link #intersect(Ray, HitRecord)} with the record of the current thread,
+     * the hierarchies take their stacks and the instances their object space rays from the thread
+     * (see {@link TraversalStack}), and only the final hit is turned into an {@link Intersection}.
+     *
+     * @param ray         the ray to intersect with the geometry
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @return the closest intersection, or null if there are no intersections closer than the distance
+     */
+    public final Intersection findClosestIntersection(Ray ray, double maxDistance) {
+        HitRecord hit = HitRecord.get().reset(maxDistance);
+        return intersect(ray, hit) ? hit.toIntersection(ray) : null;
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with the geometry.
+     * Hierarchies which support packets traverse the coherent rays (e.g. neighboring primary rays)
+     * together, sharing the traversal work; otherwise the rays are traced one by one.
+     *
+     * @param rays the rays to intersect with the geometry
+     * @return the closest intersection of each ray, or null for a ray without intersections
+     */
+    public final Intersection[] findClosestIntersections(Ray[] rays) {
+        HitRecord[] hits = HitRecord.get(rays.length);
+        for (int i = 0; i < rays.length; ++i) hits[i].reset(Double.POSITIVE_INFINITY);
+        intersect(rays, hits);
+        Intersection[] intersections = new Intersection[rays.length];
+        for (int i = 0; i < rays.length; ++i)
+            if (hits[i].geometry != null) intersections[i] = hits[i].toIntersection(rays[i]);
+        return intersections;
+    }
+
+    /**
+     * Intersects a packet of rays with the geometry, keeping the closest hit of each ray in its record.
+     * The default implementation intersects the rays one by one.
+     *
+     * @param rays the rays to intersect with the geometry
+     * @param hits the closest hit of each ray so far, updated if a closer one is found;
+     *             the array may be longer than the packet
+     */
+    protected void intersect(Ray[] rays, HitRecord[] hits) {
+        for (int i = 0; i < rays.length; ++i) intersect(rays[i], hits[i]);
+    }
+
+    /**
+     * Intersects the ray with the geometry, keeping the closest hit in the given record.
+     * Only hits closer than the distance already in the record ({@code hit.t}) are recorded,
+     * so composites skip the parts of the scene beyond the closest hit found so far.
+     * Primitives override it to intersect in plain double arithmetic, without building intersection lists;
+     * the default implementation calculates all the intersections and picks the closest one.
+     *
+     * @param ray the ray to intersect with the geometry
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections == null) return false;
+        boolean found = false;
+        for (Intersection intersection : intersections) {
+            if (hit.record(intersection.distance(ray), intersection.geometry)) {
+                hit.transform = intersection.transform;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque geometry closer than the given distance.
+     * The search stops as soon as such a blocker is found, so it is cheaper than
+     * calculating all the intersections (e.g. for shadow rays).
+     *
+     * @param ray         the ray to intersect with the geometry
+     * @param maxDistance the distance to the target of the ray (e.g. a light source)
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    public final boolean isOccluded(Ray ray, double maxDistance) {
+        return isOccludedHelper(ray, maxDistance, null);
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque geometry closer than the given distance,
+     * passing the intersections with transparent geometries met on the way to the given consumer.
+     * The search stops as soon as an opaque blocker is found, so the consumer may not see
+     * all the transparent intersections in that case.
+     *
+     * @param ray         the ray to intersect with the geometry
+     * @param maxDistance the distance to the target of the ray (e.g. a light source)
+     * @param transparent consumer of the intersections with transparent geometries
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    public final boolean isOccluded(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        return isOccludedHelper(ray, maxDistance, transparent);
+    }
+
+    /**
+     * Helper method for the occlusion query.
+     * The default implementation calculates all the intersections and checks their distances;
+     * composites override it to skip the parts of the scene beyond the distance.
+     *
+     * @param ray         the ray to intersect with the geometry
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections == null) return false;
+        for (Intersection intersection : intersections) {
+            if (intersection.distance(ray) >= maxDistance) continue;
+            if (intersection.getMaterial().isOpaque()) return true;
+            if (transparent != null) transparent.accept(intersection);
+        }
+        return false;
+    }
+
     /**
      * Class representing an intersection of a ray with a geometry.
      * Contains information about the geometry, the intersection point, and material,
      * as well as additional fields useful for lighting calculations.
+     * <p>
+     * An intersection found along a ray carries only the ray, the distance and the geometry;
+     * the point, the normal and the material are calculated on first use and cached, so the
+     * candidate hits which lose the closest-hit comparison cost nothing beyond the distance test.
+     * </p>
      */
     public static class Intersection {
 
@@ -61,24 +213,36 @@ public abstract class Intersectable {
         public final Geometry geometry;
 
         /**
-         * The point of intersection.
+         * The ray of the intersection, or null if the intersection was constructed with its point.
          */
-        public final Point point;
+        private final Ray ray;
 
         /**
-         * The material of the intersected geometry.
+         * The distance of the intersection along the ray, used if the point is not yet calculated.
          */
-        public final Material material;
+        private final double t;
 
         /**
-         * Direction vector of the ray.
+         * The point of intersection, or null until it is calculated.
          */
-        public primitives.Vector rayDirection;
+        private Point point;
 
         /**
-         * Normal vector at the intersection point.
+         * The normal of the geometry at the point, in world space, or null until it is calculated.
          */
-        public primitives.Vector normalAtPoint;
+        private primitives.Vector normal;
+
+        /**
+         * The transformation from the object space of the geometry to the world,
+         * or null if the geometry is not instanced.
+         * The point is always in world space.
+         */
+        public final Transform transform;
+
+        /**
+         * Direction vector of the ray.
+         */
+        public primitives.Vector rayDirection;
 
         /**
          * Dot product between the ray direction and the normal vector.
@@ -102,26 +266,106 @@ public abstract class Intersectable {
 
         /**
          * Constructor initializing the intersection with a geometry and point.
-         * Sets the material based on the geometry if available.
          *
          * @param geometry the geometry intersected
          * @param point the intersection point
          */
         public Intersection(Geometry geometry, Point point) {
+            this(geometry, point, null);
+        }
+
+        /**
+         * Constructor initializing the intersection with an instanced geometry.
+         *
+         * @param geometry  the geometry intersected, in its object space
+         * @param point     the intersection point in world space
+         * @param transform the transformation from the object space to the world, or null
+         */
+        public Intersection(Geometry geometry, Point point, Transform transform) {
             this.geometry = geometry;
+            this.ray = null;
+            this.t = Double.NaN;
             this.point = point;
-            if (geometry != null) {
-                this.material = geometry.getMaterial();
-            } else {
-                this.material = null;
-            }
+            this.transform = transform;
+        }
+
+        /**
+         * Constructor initializing the intersection with a geometry and the distance along a ray,
+         * without calculating the point.
+         *
+         * @param geometry the geometry intersected
+         * @param ray      the ray
+         * @param t        the distance of the intersection along the ray
+         */
+        public Intersection(Geometry geometry, Ray ray, double t) {
+            this(geometry, ray, t, null);
+        }
+
+        /**
+         * Constructor initializing the intersection with an instanced geometry and the distance
+         * along a world space ray, without calculating the point.
+         *
+         * @param geometry  the geometry intersected, in its object space
+         * @param ray       the ray in world space
+         * @param t         the distance of the intersection along the ray
+         * @param transform the transformation from the object space to the world, or null
+         */
+        public Intersection(Geometry geometry, Ray ray, double t, Transform transform) {
+            this.geometry = geometry;
+            this.ray = ray;
+            this.t = t;
+            this.transform = transform;
+        }
+
+        /**
+         * Returns the point of intersection, calculating it on first use.
+         *
+         * @return the point in world space
+         */
+        public Point getPoint() {
+            if (point == null) point = ray.getPoint(t);
+            return point;
+        }
+
+        /**
+         * Calculates the distance of the intersection from the head of a ray.
+         * For the ray the intersection was found along, it is the known distance, and the point is not calculated.
+         *
+         * @param ray the ray
+         * @return the distance from the head of the ray
+         */
+        public double distance(Ray ray) {
+            return ray == this.ray ? t : ray.getHead().distance(getPoint());
+        }
+
+        /**
+         * Returns the material of the intersected geometry.
+         *
+         * @return the material, or null if there is no geometry
+         */
+        public Material getMaterial() {
+            return geometry == null ? null : geometry.getMaterial();
+        }
+
+        /**
+         * Returns the normal of the geometry at the point, in world space, calculating it on first use.
+         * The normal of an instanced geometry is calculated in its object space and transformed to the world.
+         *
+         * @return the normal
+         */
+        public primitives.Vector getNormal() {
+            if (normal == null)
+                normal = transform == null
+                        ? geometry.getNormal(getPoint())
+                        : transform.transformNormal(geometry.getNormal(transform.inversePoint(getPoint())));
+            return normal;
         }
 
         @Override
         public String toString() {
             return "Intersection{" +
                     "geometry=" + geometry +
-                    ", point=" + point +
+                    ", point=" + getPoint() +
                     '}';
         }
 
@@ -130,7 +374,7 @@ public abstract class Intersectable {
             if (this == obj) return true;
             if (obj == null || getClass() != obj.getClass()) return false;
             Intersection that = (Intersection) obj;
-            return geometry.equals(that.geometry) && point.equals(that.point);
+            return geometry.equals(that.geometry) && getPoint().equals(that.getPoint());
         }
     }
 }
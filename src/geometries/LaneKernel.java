@@ -0,0 +1,89 @@
+package geometries;
+
+/**
+ * Kernels of the lanes of the wide hierarchy: one ray against the four child boxes of a {@link WideBVH} node,
+ * and one ray against the four triangles of a {@link TriangleBlocks} block.
+ * <p>
+ * The scalar loops of {@link WideBVH} and {@link TriangleBlocks} are the reference implementation.
+ * An implementation on the incubating Java Vector API, {@code geometries.VectorLaneKernel}, lives in the
+ * separate source root {@code src-vector}, compiled with {@code --add-modules jdk.incubator.vector}.
+ * It is loaded reflectively, so nothing else is compiled or run against the incubator module. The scalar
+ * loops are used when the class is absent, when the module is not resolved at run time (the JVM was
+ * started without {@code --add-modules jdk.incubator.vector}), or when the processor has no vectors of
+ * four doubles.
+ * </p>
+ * Both implementations do the same IEEE operations in the same order, so they find exactly the same hits.
+ */
+interface LaneKernel {
+    /**
+     * The Vector API kernel, or null if it is not available.
+     */
+    LaneKernel VECTOR = load();
+
+    /**
+     * Loads the Vector API kernel.
+     *
+     * @return the kernel, or null if it is not available
+     */
+    private static LaneKernel load() {
+        try {
+            return (LaneKernel) Class.forName("geometries.VectorLaneKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // no Vector API - the scalar loops are used
+        }
+    }
+
+    /**
+     * Tests the ray against four boxes, see {@link WideBVH#testLanes(double[], int, int, int, int, int, int,
+     * double, double, double, double, double, double, double, double[])}.
+     *
+     * @param bounds  the bounds, six groups of four lanes per node
+     * @param nearX   the index of the near X planes of the lanes
+     * @param nearY   the index of the near Y planes of the lanes
+     * @param nearZ   the index of the near Z planes of the lanes
+     * @param farX    the index of the far X planes of the lanes
+     * @param farY    the index of the far Y planes of the lanes
+     * @param farZ    the index of the far Z planes of the lanes
+     * @param ox      the X coordinate of the ray head
+     * @param oy      the Y coordinate of the ray head
+     * @param oz      the Z coordinate of the ray head
+     * @param invDx   the inverse of the X component of the ray direction
+     * @param invDy   the inverse of the Y component of the ray direction
+     * @param invDz   the inverse of the Z component of the ray direction
+     * @param tMax    the distance beyond which the boxes are considered missed
+     * @param entries output - the entry distance of each box, or positive infinity if it is missed
+     */
+    void testBoxes(double[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                   double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                   double tMax, double[] entries);
+
+    /**
+     * Tests the ray against four boxes with bounds in single precision, widened to double.
+     *
+     * @see #testBoxes(double[], int, int, int, int, int, int, double, double, double, double, double, double,
+     * double, double[])
+     */
+    void testBoxes(float[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                   double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                   double tMax, double[] entries);
+
+    /**
+     * Intersects the ray with four triangles, see
+     * {@link TriangleBlocks#intersectLanes(double[], int, double, double, double, double, double, double,
+     * double[], double[], double[])}.
+     *
+     * @param data the packed triangles
+     * @param b    the first element of the block
+     * @param ox   the X coordinate of the ray head
+     * @param oy   the Y coordinate of the ray head
+     * @param oz   the Z coordinate of the ray head
+     * @param dx   the X component of the ray direction
+     * @param dy   the Y component of the ray direction
+     * @param dz   the Z component of the ray direction
+     * @param t    output - the distance of the hit of each lane, or positive infinity if it is missed
+     * @param u    output - the barycentric coordinate of the hit of each lane relative to the second vertex
+     * @param v    output - the barycentric coordinate of the hit of each lane relative to the third vertex
+     */
+    void intersectTriangles(double[] data, int b, double ox, double oy, double oz, double dx, double dy, double dz,
+                            double[] t, double[] u, double[] v);
+}
@@ -8,7 +8,10 @@ import primitives.Double3;
  * as well as shininess factor for specular highlights.
  */
 public class Material {
-
+    /**
+     * Transparency coefficient below which a material blocks light completely.
+     */
+    private static final double OPAQUE_KT = 0.001;
 
     public Double3 kT = Double3.ZERO;
 
@@ -125,4 +128,13 @@ public class Material {
         this.sh = sh;
         return this;
     }
+
+    /**
+     * Checks whether the material blocks light completely.
+     *
+     * @return true if the transparency coefficient is negligible in all the components
+     */
+    public boolean isOpaque() {
+        return kT.lowerThan(OPAQUE_KT);
+    }
 }
@@ -0,0 +1,59 @@
+package geometries;
+
+/**
+ * Builds a Bounding Volume Hierarchy (BVH) by cutting the shapes of each node in half
+ * along the longest axis of the node bounding box.
+ * <p>
+ * The shapes are not sorted: the median centroid is placed with a linear-time selection,
+ * and only the side of each shape relative to the median matters.
+ * </p>
+ */
+public class MedianBuilder extends BVHBuilder {
+
+    @Override
+    protected int split(Primitives prims, int[] order, int start, int end, BoundingBox nodeBox) {
+        double dx = nodeBox.maxX - nodeBox.minX;
+        double dy = nodeBox.maxY - nodeBox.minY;
+        double dz = nodeBox.maxZ - nodeBox.minZ;
+
+        int axis = 0;
+        if (dy > dx && dy > dz) axis = 1;
+        else if (dz > dx && dz > dy) axis = 2;
+
+        int mid = start + (end - start) / 2;
+        select(prims, order, start, end - 1, mid, axis);
+        return mid;
+    }
+
+    /**
+     * Rearranges {@code order[lo..hi]} so that the shape with the k-th smallest centroid is at
+     * index k, all the shapes before it have smaller or equal centroids and all the shapes
+     * after it have greater or equal ones (quickselect).
+     *
+     * @param prims the cached bounds of all the shapes
+     * @param order indices of the shapes
+     * @param lo    first index (inclusive)
+     * @param hi    last index (inclusive)
+     * @param k     the index to place
+     * @param axis  the axis of the centroids
+     */
+    private static void select(Primitives prims, int[] order, int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = prims.centroid(order[(lo + hi) >>> 1], axis);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (prims.centroid(order[i], axis) < pivot) ++i;
+                while (prims.centroid(order[j], axis) > pivot) --j;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+}
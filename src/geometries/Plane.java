@@ -7,6 +7,7 @@ import primitives.Vector;
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Represents a Plane in 3D space, defined by a point and a normal vector.
@@ -70,6 +71,36 @@ public class Plane extends Geometry {
         return normal;
     }
 
+    /**
+     * Calculates the distance along the ray to its intersection with the plane,
+     * in plain double arithmetic.
+     *
+     * @param ray the ray to intersect with the plane
+     * @return the distance, or positive infinity if the ray does not intersect the plane
+     */
+    double distance(Ray ray) {
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        // Check if the ray is parallel to the plane
+        double denominator = nx * ray.getDirX() + ny * ray.getDirY() + nz * ray.getDirZ();
+        if (alignZero(denominator) == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double qx = q.getX() - ray.getHeadX();
+        double qy = q.getY() - ray.getHeadY();
+        double qz = q.getZ() - ray.getHeadZ();
+        if (isZero(qx) && isZero(qy) && isZero(qz)) {
+            return Double.POSITIVE_INFINITY; // The ray starts on the plane
+        }
+        double numerator = alignZero(nx * qx + ny * qy + nz * qz);
+        double t = alignZero(numerator / denominator);
+        return t <= 0 ? Double.POSITIVE_INFINITY : t;
+    }
+
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        return hit.record(distance(ray), this);
+    }
+
     /**
      * Finds the intersection points of a given ray with the plane.
      * <p>
@@ -84,25 +115,8 @@ public class Plane extends Geometry {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        // Check if the ray is parallel to the plane
-        double denominator = normal.dotProduct(ray.getDirection());
-        if (alignZero(denominator) == 0) {
-            return null; // The ray is parallel to the plane
-        }
-        if (q.equals(ray.getHead())) {
-            return null; // The ray starts on the plane
-        }
-        // Calculate the numerator for the intersection point
-        double numerator = alignZero(normal.dotProduct(q.subtract(ray.getHead())));
-        // Calculate the t parameter for the intersection point
-        double t = alignZero(numerator / denominator);
-        if (t <= 0) {
-            return null; // The intersection point is behind the ray's head
-        }
-
-        // Calculate the intersection point
-        Point intersectionPoint = ray.getHead().add(ray.getDirection().scale(t));
-        return List.of(new Intersection(this, intersectionPoint));
+        double t = distance(ray);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray, t));
     }
     @Override
     public void setBoundingBox() {
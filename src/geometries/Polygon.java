@@ -6,6 +6,7 @@ import primitives.Vector;
 
 import java.util.List;
 
+import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
 
 /**
@@ -29,6 +30,19 @@ public class Polygon extends Geometry {
      */
     private final int size;
 
+    /**
+     * Inward normals of the edge planes - the planes through the edges perpendicular to the polygon,
+     * three components per edge. Edge i goes from vertex i to the next one.
+     * Null for a subclass with its own intersection (see {@link #Polygon(boolean, Point...)}).
+     */
+    private final double[] edgeNormals;
+
+    /**
+     * Offsets of the edge planes: a point of the plane of the polygon is inside it
+     * if it is on the inner side of every edge plane.
+     */
+    private final double[] edgeOffsets;
+
     /**
      * Constructor to initialize a Polygon object with a list of vertices.
      * The list must be ordered by edge path, and the polygon must be convex.
@@ -38,6 +52,19 @@ public class Polygon extends Geometry {
      *                                  not ordered, or the polygon is not convex)
      */
     public Polygon(Point... vertices) {
+        this(true, vertices);
+    }
+
+    /**
+     * Constructor for subclasses which intersect the polygon by their own algorithm,
+     * so the edge planes used by {@link #intersect(Ray, HitRecord)} need not be stored.
+     *
+     * @param edgePlanes true to precompute the edge planes, false if the subclass overrides the intersection
+     * @param vertices   list of vertices ordered by edge path
+     * @throws IllegalArgumentException if the vertices are invalid (e.g., not in the same plane,
+     *                                  not ordered, or the polygon is not convex)
+     */
+    protected Polygon(boolean edgePlanes, Point... vertices) {
         if (vertices.length < 3)
             throw new IllegalArgumentException("A polygon can't have less than 3 vertices");
         this.vertices = List.of(vertices);
@@ -45,9 +72,24 @@ public class Polygon extends Geometry {
 
         // Generate the plane based on the first three vertices
         plane = new Plane(vertices[0], vertices[1], vertices[2]);
-        if (size == 3) return; // A triangle is always convex
 
+        // The normal is oriented by the first three vertices, so n x edge points inward on every edge
         Vector n = plane.getNormal(null);
+        double nx = n.getX(), ny = n.getY(), nz = n.getZ();
+        edgeNormals = edgePlanes ? new double[size * 3] : null;
+        edgeOffsets = edgePlanes ? new double[size] : null;
+        for (int i = 0; edgePlanes && i < size; ++i) {
+            Point from = vertices[i];
+            Point to = vertices[(i + 1) % size];
+            double ex = to.getX() - from.getX(), ey = to.getY() - from.getY(), ez = to.getZ() - from.getZ();
+            double mx = ny * ez - nz * ey, my = nz * ex - nx * ez, mz = nx * ey - ny * ex;
+            edgeNormals[i * 3] = mx;
+            edgeNormals[i * 3 + 1] = my;
+            edgeNormals[i * 3 + 2] = mz;
+            edgeOffsets[i] = mx * from.getX() + my * from.getY() + mz * from.getZ();
+        }
+        if (size == 3) return; // A triangle is always convex
+
         Vector edge1 = vertices[size - 1].subtract(vertices[size - 2]);
         Vector edge2 = vertices[0].subtract(vertices[size - 1]);
 
@@ -77,7 +119,8 @@ public class Polygon extends Geometry {
     /**
      * Finds the intersection points of a given ray with the polygon.
      * This method first checks if the ray intersects the plane of the polygon.
-     * If it does, it then checks if the intersection point lies inside the polygon.
+     * If it does, it then checks if the intersection point lies inside the polygon
+     * (see {@link #intersect(Ray, HitRecord)}).
      *
      * @param ray the ray to intersect with the polygon
      * @return a list of intersection points if the ray intersects the polygon,
@@ -85,26 +128,33 @@ public class Polygon extends Geometry {
      */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        // Check if the ray intersects the plane
-        List<Point> planeIntersections = plane.findIntersections(ray);
-        if (planeIntersections == null)
-            return null; // No intersection with the plane
-
-        // Check if the intersection point is inside the polygon
-        Point intersectionPoint = planeIntersections.get(0);
-        Vector v = intersectionPoint.subtract(vertices.get(0));
-        Vector edge1 = vertices.get(1).subtract(vertices.get(0));
-        Vector edge2 = vertices.get(size - 1).subtract(vertices.get(0));
-        boolean positive = edge1.crossProduct(v).dotProduct(plane.getNormal(null)) > 0;
-        for (int i = 1; i < size; ++i) {
-            edge1 = edge2;
-            edge2 = vertices.get(i).subtract(vertices.get(i - 1));
-            v = intersectionPoint.subtract(vertices.get(i));
-            if (positive != (edge1.crossProduct(v).dotProduct(plane.getNormal(null)) > 0))
-                return null; // The intersection point is outside the polygon
+        HitRecord hit = new HitRecord().reset(Double.POSITIVE_INFINITY);
+        return intersect(ray, hit) ? List.of(new Intersection(this, ray, hit.t)) : null;
+    }
+
+    /**
+     * Intersects the ray with the polygon in plain double arithmetic: the hit with the plane
+     * of the polygon is checked against the edge planes precomputed on construction.
+     * A hit on an edge or a vertex is not considered inside.
+     *
+     * @param ray the ray to intersect with the polygon
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        double t = plane.distance(ray);
+        if (t >= hit.t) return false; // No intersection with the plane, or a farther one
+
+        double px = ray.getHeadX() + ray.getDirX() * t;
+        double py = ray.getHeadY() + ray.getDirY() * t;
+        double pz = ray.getHeadZ() + ray.getDirZ() * t;
+        for (int i = 0; i < size; ++i) {
+            double side = edgeNormals[i * 3] * px + edgeNormals[i * 3 + 1] * py + edgeNormals[i * 3 + 2] * pz
+                    - edgeOffsets[i];
+            if (alignZero(side) <= 0) return false; // The intersection point is outside the polygon
         }
-        // The intersection point is inside the polygon
-        return List.of(new Intersection(this, intersectionPoint));
+        return hit.record(t, this);
     }
 
     @Override
@@ -0,0 +1,422 @@
+package geometries;
+
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid acceleration structure.
+ * <p>
+ * The bounding box of the scene is divided into equal cells, and every shape is registered
+ * in all the cells that its bounding box overlaps. A ray walks through the cells it crosses
+ * in order (3D-DDA), so for the closest intersection the walk stops at the first cell
+ * in which a confirmed hit lies. The resolution is selected automatically from the amount
+ * of shapes per volume. Shapes without a finite bounding box (e.g. planes) are kept in a
+ * separate list which is always tested.
+ * </p>
+ * Each shape is tested at most once per ray, using a mailbox of ray stamps kept per thread, and the state
+ * of the cell walk is taken from the {@link TraversalStack} of the thread, so a query allocates nothing.
+ * A mailbox lives as long as its thread - a render by virtual threads creates one per task and drops it
+ * with the task.
+ */
+public class RegularGrid extends Intersectable {
+    /** Average amount of cells per shape */
+    private static final double DENSITY = 3.0;
+    /** Maximal amount of cells along each axis */
+    private static final int MAX_RESOLUTION = 128;
+    /** Relative margin added to the shape boxes, protecting against rounding at the cell walls */
+    private static final double MARGIN = 1e-9;
+
+    /** Shapes registered in the cells */
+    private final Intersectable[] bounded;
+    /** Shapes tested by every ray */
+    private final Intersectable[] unbounded;
+
+    /** Amount of cells along each axis */
+    private final int nx, ny, nz;
+    /** The lower corner of the grid */
+    private final double minX, minY, minZ;
+    /** The size of a cell along each axis */
+    private final double cellX, cellY, cellZ;
+
+    /** Start of the shape list of each cell in {@link #cellItems} (one extra entry for the end) */
+    private final int[] cellStart;
+    /** Indices of the shapes of all the cells, cell after cell */
+    private final int[] cellItems;
+
+    /** Mailbox of each thread */
+    private final ThreadLocal<Mailbox> mailboxes;
+
+    /**
+     * Ray counter (generation) and shape stamps, so each shape is tested once per ray
+     * even if it spans several cells. A grid is never reached again inside its own query
+     * (the shapes it holds cannot contain it), so one mailbox per thread serves all its queries.
+     */
+    private static class Mailbox {
+        /** Stamp of the last ray that tested each shape */
+        final int[] stamps;
+        /** Stamp of the current ray */
+        int ray = 0;
+
+        /**
+         * @param size amount of shapes
+         */
+        Mailbox(int size) {
+            stamps = new int[size];
+        }
+
+        /**
+         * Starts a new ray.
+         *
+         * @return the stamp of the new ray
+         */
+        int next() {
+            if (++ray == 0) { // wrapped around - forget the old stamps
+                java.util.Arrays.fill(stamps, 0);
+                ray = 1;
+            }
+            return ray;
+        }
+    }
+
+    /**
+     * Builds a grid over all the shapes of the collection, including the shapes
+     * nested in inner collections (e.g. the nodes of a BVH).
+     *
+     * @param geometries the shapes of the scene
+     */
+    public RegularGrid(Geometries geometries) {
+        geometries.setBoundingBox();
+        List<Intersectable> finite = new ArrayList<>();
+        List<Intersectable> infinite = new ArrayList<>();
+        collect(geometries, finite, infinite);
+        bounded = finite.toArray(new Intersectable[0]);
+        unbounded = infinite.toArray(new Intersectable[0]);
+        int shapes = bounded.length;
+        mailboxes = ThreadLocal.withInitial(() -> new Mailbox(shapes));
+
+        if (bounded.length == 0) {
+            nx = ny = nz = 0;
+            minX = minY = minZ = 0;
+            cellX = cellY = cellZ = 1;
+            cellStart = new int[1];
+            cellItems = new int[0];
+            return;
+        }
+
+        double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY, loZ = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY, hiZ = Double.NEGATIVE_INFINITY;
+        for (Intersectable shape : bounded) {
+            BoundingBox box = shape.getBoundingBox();
+            loX = Math.min(loX, box.minX);
+            loY = Math.min(loY, box.minY);
+            loZ = Math.min(loZ, box.minZ);
+            hiX = Math.max(hiX, box.maxX);
+            hiY = Math.max(hiY, box.maxY);
+            hiZ = Math.max(hiZ, box.maxZ);
+        }
+
+        // Flat scenes still need a positive volume for the resolution formula
+        double maxExtent = Math.max(Math.max(hiX - loX, hiY - loY), Math.max(hiZ - loZ, 1e-6));
+        double minExtent = maxExtent * 1e-3;
+        double dx = Math.max(hiX - loX, minExtent);
+        double dy = Math.max(hiY - loY, minExtent);
+        double dz = Math.max(hiZ - loZ, minExtent);
+        double k = Math.cbrt(DENSITY * bounded.length / (dx * dy * dz));
+        nx = resolution(dx * k);
+        ny = resolution(dy * k);
+        nz = resolution(dz * k);
+
+        double margin = maxExtent * MARGIN;
+        minX = loX - margin;
+        minY = loY - margin;
+        minZ = loZ - margin;
+        cellX = (dx + 2 * margin) / nx;
+        cellY = (dy + 2 * margin) / ny;
+        cellZ = (dz + 2 * margin) / nz;
+
+        // Two passes: count the shapes of each cell, then fill the cell lists
+        cellStart = new int[nx * ny * nz + 1];
+        int[][] ranges = new int[bounded.length][];
+        for (int i = 0; i < bounded.length; ++i) {
+            ranges[i] = cellRange(bounded[i].getBoundingBox(), margin);
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; ++z)
+                for (int y = r[1]; y <= r[4]; ++y)
+                    for (int x = r[0]; x <= r[3]; ++x)
+                        ++cellStart[cellIndex(x, y, z) + 1];
+        }
+        for (int c = 1; c < cellStart.length; ++c) cellStart[c] += cellStart[c - 1];
+        cellItems = new int[cellStart[cellStart.length - 1]];
+        int[] fill = cellStart.clone();
+        for (int i = 0; i < bounded.length; ++i) {
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; ++z)
+                for (int y = r[1]; y <= r[4]; ++y)
+                    for (int x = r[0]; x <= r[3]; ++x)
+                        cellItems[fill[cellIndex(x, y, z)]++] = i;
+        }
+
+        this.boundingBox = unbounded.length > 0 ? null
+                : new BoundingBox(minX, minX + nx * cellX, minY, minY + ny * cellY, minZ, minZ + nz * cellZ);
+    }
+
+    /**
+     * Collects the shapes of a collection recursively, separating finite from infinite ones.
+     */
+    private static void collect(Geometries geometries, List<Intersectable> finite, List<Intersectable> infinite) {
+        for (Intersectable shape : geometries.getShapes()) {
+            if (shape instanceof Geometries inner) {
+                collect(inner, finite, infinite);
+                continue;
+            }
+            BoundingBox box = shape.getBoundingBox();
+            if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) infinite.add(shape);
+            else finite.add(shape);
+        }
+    }
+
+    /**
+     * Converts a scaled extent into an amount of cells.
+     */
+    private static int resolution(double cells) {
+        return Math.max(1, Math.min(MAX_RESOLUTION, (int) Math.round(cells)));
+    }
+
+    /**
+     * Calculates the range of cells overlapped by a box.
+     *
+     * @return {minX, minY, minZ, maxX, maxY, maxZ} cell coordinates (inclusive)
+     */
+    private int[] cellRange(BoundingBox box, double margin) {
+        return new int[]{
+                clamp((int) ((box.minX - margin - minX) / cellX), nx),
+                clamp((int) ((box.minY - margin - minY) / cellY), ny),
+                clamp((int) ((box.minZ - margin - minZ) / cellZ), nz),
+                clamp((int) ((box.maxX + margin - minX) / cellX), nx),
+                clamp((int) ((box.maxY + margin - minY) / cellY), ny),
+                clamp((int) ((box.maxZ + margin - minZ) / cellZ), nz)};
+    }
+
+    /**
+     * Clamps a cell coordinate into [0, n-1].
+     */
+    private static int clamp(int value, int n) {
+        return value < 0 ? 0 : Math.min(value, n - 1);
+    }
+
+    /**
+     * Calculates the index of a cell.
+     */
+    private int cellIndex(int x, int y, int z) {
+        return x + nx * (y + ny * z);
+    }
+
+    @Override
+    public void setBoundingBox() {
+        // The grid is built once and never changes
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        List<Intersection> intersections = null;
+        for (Intersectable shape : unbounded) {
+            List<Intersection> shapeIntersections = shape.calculateIntersections(ray);
+            if (shapeIntersections != null) {
+                if (intersections == null) intersections = new LinkedList<>();
+                intersections.addAll(shapeIntersections);
+            }
+        }
+
+        TraversalStack scratch = TraversalStack.get();
+        Walk walk = scratch.pushWalk();
+        try {
+            if (!startWalk(ray, walk)) return intersections;
+            Mailbox box = mailboxes.get();
+            int stamp = box.next();
+            do {
+                int cell = cellIndex(walk.x, walk.y, walk.z);
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+                    int item = cellItems[i];
+                    if (box.stamps[item] == stamp) continue;
+                    box.stamps[item] = stamp;
+                    List<Intersection> shapeIntersections = bounded[item].calculateIntersections(ray);
+                    if (shapeIntersections != null) {
+                        if (intersections == null) intersections = new LinkedList<>();
+                        intersections.addAll(shapeIntersections);
+                    }
+                }
+            } while (walk.step());
+        } finally {
+            scratch.popWalk();
+        }
+        return intersections;
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the shapes of the grid.
+     * The cell walk stops as soon as the closest hit found so far lies before the exit
+     * from the current cell, since the following cells are all farther away.
+     *
+     * @param ray the ray
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        boolean found = false;
+        for (Intersectable shape : unbounded)
+            if (shape.intersect(ray, hit)) found = true;
+
+        TraversalStack scratch = TraversalStack.get();
+        Walk walk = scratch.pushWalk();
+        try {
+            if (!startWalk(ray, walk)) return found;
+            Mailbox box = mailboxes.get();
+            int stamp = box.next();
+            do {
+                if (walk.tEnter >= hit.t) break;
+                int cell = cellIndex(walk.x, walk.y, walk.z);
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+                    int item = cellItems[i];
+                    if (box.stamps[item] == stamp) continue;
+                    box.stamps[item] = stamp;
+                    if (bounded[item].intersect(ray, hit)) found = true;
+                }
+                // A confirmed hit inside the current cell cannot be beaten by the next cells
+                if (hit.t <= walk.tExit()) break;
+            } while (walk.step());
+        } finally {
+            scratch.popWalk();
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque shape closer than the given distance.
+     * The cell walk stops at the first opaque blocker, or at the first cell entered beyond the distance.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        for (Intersectable shape : unbounded)
+            if (shape.isOccluded(ray, maxDistance, transparent)) return true;
+
+        TraversalStack scratch = TraversalStack.get();
+        Walk walk = scratch.pushWalk();
+        try {
+            if (!startWalk(ray, walk)) return false;
+            Mailbox box = mailboxes.get();
+            int stamp = box.next();
+            do {
+                if (walk.tEnter >= maxDistance) break;
+                int cell = cellIndex(walk.x, walk.y, walk.z);
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+                    int item = cellItems[i];
+                    if (box.stamps[item] == stamp) continue;
+                    box.stamps[item] = stamp;
+                    if (bounded[item].isOccluded(ray, maxDistance, transparent)) return true;
+                }
+            } while (walk.step());
+        } finally {
+            scratch.popWalk();
+        }
+        return false;
+    }
+
+    /**
+     * Starts a cell walk of the ray through the grid.
+     *
+     * @param ray  the ray
+     * @param walk the walk to be positioned at the first cell
+     * @return false if the ray misses the grid
+     */
+    private boolean startWalk(Ray ray, Walk walk) {
+        if (nx == 0) return false;
+        double maxX = minX + nx * cellX, maxY = minY + ny * cellY, maxZ = minZ + nz * cellZ;
+        double tEnter = BoundingBox.entryDistance(ray, minX, maxX, minY, maxY, minZ, maxZ,
+                0, Double.POSITIVE_INFINITY);
+        if (tEnter == Double.POSITIVE_INFINITY) return false;
+
+        double ox = ray.getHeadX(), oy = ray.getHeadY(), oz = ray.getHeadZ();
+        double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+        walk.nx = nx;
+        walk.ny = ny;
+        walk.nz = nz;
+        walk.tEnter = tEnter;
+        walk.x = clamp((int) ((ox + dx * tEnter - minX) / cellX), nx);
+        walk.y = clamp((int) ((oy + dy * tEnter - minY) / cellY), ny);
+        walk.z = clamp((int) ((oz + dz * tEnter - minZ) / cellZ), nz);
+
+        walk.stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        walk.stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        walk.stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        walk.deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellX / Math.abs(dx);
+        walk.deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellY / Math.abs(dy);
+        walk.deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : cellZ / Math.abs(dz);
+        walk.nextX = dx == 0 ? Double.POSITIVE_INFINITY
+                : (minX + (walk.x + (dx > 0 ? 1 : 0)) * cellX - ox) / dx;
+        walk.nextY = dy == 0 ? Double.POSITIVE_INFINITY
+                : (minY + (walk.y + (dy > 0 ? 1 : 0)) * cellY - oy) / dy;
+        walk.nextZ = dz == 0 ? Double.POSITIVE_INFINITY
+                : (minZ + (walk.z + (dz > 0 ? 1 : 0)) * cellZ - oz) / dz;
+        return true;
+    }
+
+    /**
+     * State of a 3D-DDA walk through the cells of a grid.
+     * The walks are reused per thread, see {@link TraversalStack#pushWalk()}.
+     */
+    static final class Walk {
+        /** Amount of cells of the grid along each axis */
+        int nx, ny, nz;
+        /** Current cell coordinates */
+        int x, y, z;
+        /** Cell coordinate step along each axis (-1, 0 or 1) */
+        int stepX, stepY, stepZ;
+        /** Distance along the ray to the next cell wall on each axis */
+        double nextX, nextY, nextZ;
+        /** Distance along the ray between two cell walls on each axis */
+        double deltaX, deltaY, deltaZ;
+        /** Distance along the ray at which the current cell is entered */
+        double tEnter;
+
+        /**
+         * @return the distance along the ray at which the current cell is left
+         */
+        double tExit() {
+            return Math.min(nextX, Math.min(nextY, nextZ));
+        }
+
+        /**
+         * Advances to the next cell along the ray.
+         *
+         * @return false if the ray leaves the grid
+         */
+        boolean step() {
+            if (nextX <= nextY && nextX <= nextZ) {
+                tEnter = nextX;
+                x += stepX;
+                nextX += deltaX;
+                return x >= 0 && x < nx;
+            }
+            if (nextY <= nextZ) {
+                tEnter = nextY;
+                y += stepY;
+                nextY += deltaY;
+                return y >= 0 && y < ny;
+            }
+            tEnter = nextZ;
+            z += stepZ;
+            nextZ += deltaZ;
+            return z >= 0 && z < nz;
+        }
+    }
+}
@@ -59,7 +59,7 @@ public class Sphere extends RadialGeometry {
 
         if (p0.equals(center)) {
             // Ray starts at the center of the sphere
-            return List.of(new Intersection(this, ray.getPoint(radius)));
+            return List.of(new Intersection(this, ray, radius));
         }
 
         Vector u = center.subtract(p0);
@@ -80,19 +80,53 @@ public class Sphere extends RadialGeometry {
 
         if (t1Valid && t2Valid) {
             return List.of(
-                    new Intersection(this, ray.getPoint(t1)),
-                    new Intersection(this, ray.getPoint(t2))
+                    new Intersection(this, ray, t1),
+                    new Intersection(this, ray, t2)
             );
         }
         if (t1Valid) {
-            return List.of(new Intersection(this, ray.getPoint(t1)));
+            return List.of(new Intersection(this, ray, t1));
         }
         if (t2Valid) {
-            return List.of(new Intersection(this, ray.getPoint(t2)));
+            return List.of(new Intersection(this, ray, t2));
         }
 
         return null;
     }
+
+    /**
+     * Intersects the ray with the sphere in plain double arithmetic, recording the nearer
+     * of the two hits in front of the ray head.
+     *
+     * @param ray the ray to intersect with the sphere
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        double ux = center.getX() - ray.getHeadX();
+        double uy = center.getY() - ray.getHeadY();
+        double uz = center.getZ() - ray.getHeadZ();
+        if (Util.isZero(ux) && Util.isZero(uy) && Util.isZero(uz)) {
+            // Ray starts at the center of the sphere
+            return hit.record(radius, this);
+        }
+
+        double tm = alignZero(ux * ray.getDirX() + uy * ray.getDirY() + uz * ray.getDirZ());
+        double dSquared = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+        if (alignZero(dSquared - radiusSquared) >= 0) {
+            return false; // No intersections
+        }
+
+        double th = Math.sqrt(radiusSquared - dSquared);
+        double t1 = alignZero(tm - th);
+        if (t1 > 0 && !Util.isZero(t1)) {
+            return hit.record(t1, this);
+        }
+        double t2 = alignZero(tm + th);
+        return t2 > 0 && !Util.isZero(t2) && hit.record(t2, this);
+    }
+
     @Override
     public void setBoundingBox() {
         // מחשב תיבת גבול לפי נקודות קצה
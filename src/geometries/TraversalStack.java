@@ -0,0 +1,207 @@
+package geometries;
+
+import primitives.ScratchRay;
+
+import java.util.Arrays;
+
+/**
+ * Scratch memory of the hierarchy traversals, reused per thread.
+ * <p>
+ * A traversal keeps a stack of the nodes still to be visited, with the entry distance of each one.
+ * Instead of allocating the stack per ray, every traversal reserves a frame of the stack of its thread,
+ * sized from the depth of its hierarchy, and releases it when done. Traversals nest - a primitive of one
+ * hierarchy may be another hierarchy (a flattened collection or an instance) - so the frame of a nested
+ * traversal is reserved above the frame of the outer one. The arrays grow to the deepest nesting met
+ * by the thread and are then reused without allocating.
+ * </p>
+ * A frame may move to larger arrays when a nested traversal grows them,
+ * so a traversal must read the arrays from this object again after visiting a primitive.
+ */
+final class TraversalStack {
+    /**
+     * Stacks of the threads.
+     */
+    private static final ThreadLocal<TraversalStack> STACKS = ThreadLocal.withInitial(TraversalStack::new);
+
+    /** Initial capacity of the stack */
+    private static final int INITIAL_SIZE = 64;
+
+    /**
+     * The node indices (or other node codes) of the stack.
+     */
+    int[] nodes = new int[INITIAL_SIZE];
+
+    /**
+     * The entry distances of the stack.
+     */
+    double[] entries = new double[INITIAL_SIZE];
+
+    /**
+     * The shapes of the stack, for traversals of collections which are not flattened.
+     */
+    Intersectable[] shapes = new Intersectable[INITIAL_SIZE];
+
+    /**
+     * The entry distances of the children of a {@link WideBVH} node. The box test writes them
+     * and the traversal reads them right away, before visiting any primitive,
+     * so one buffer serves all the nested traversals.
+     */
+    final double[] lanes = new double[WideBVH.WIDTH];
+
+    /**
+     * The distances and the barycentric coordinates of the hits of the four triangles of a block,
+     * see {@link TriangleBlocks#intersect}. Like the child entries, they are read right after
+     * the kernel writes them, before any nested traversal.
+     */
+    final double[] laneT = new double[TriangleBlocks.WIDTH],
+            laneU = new double[TriangleBlocks.WIDTH],
+            laneV = new double[TriangleBlocks.WIDTH];
+
+    /**
+     * The node stack of the packet traversal of {@link FlatBVH}. A packet traversal never nests - the primitives
+     * are intersected ray by ray - so its buffers are not divided into frames.
+     */
+    int[] packetNodes = new int[0];
+
+    /**
+     * The masks of the active rays of the packet stack.
+     */
+    long[] packetMasks = new long[0];
+
+    /**
+     * The nearest entry distance of the packet stack.
+     */
+    double[] packetNearest = new double[0];
+
+    /**
+     * The entry distances of the rays into the nodes of the packet stack, a row of the packet size per node.
+     */
+    double[] packetEntries = new double[0];
+
+    /**
+     * The heads of the rays of the packet, and a row of entries being swapped.
+     */
+    final double[] packetX = new double[FlatBVH.PACKET_SIZE], packetY = new double[FlatBVH.PACKET_SIZE],
+            packetZ = new double[FlatBVH.PACKET_SIZE], packetSwap = new double[FlatBVH.PACKET_SIZE];
+
+    /**
+     * The intervals of the inverse direction components of the packet, and the entry and exit range of a node.
+     */
+    final double[] packetInv = new double[6], packetRange = new double[4];
+
+    /**
+     * The first free element of the stack.
+     */
+    private int top = 0;
+
+    /**
+     * The object space rays of the instances being traversed, one per level of nested instances.
+     */
+    private ScratchRay[] rays = new ScratchRay[0];
+
+    /**
+     * The amount of object space rays in use.
+     */
+    private int rayCount = 0;
+
+    /**
+     * The cell walks of the grids being traversed, one per level of nested grids.
+     */
+    private RegularGrid.Walk[] walks = new RegularGrid.Walk[0];
+
+    /**
+     * The amount of cell walks in use.
+     */
+    private int walkCount = 0;
+
+    /**
+     * Returns the stack of the current thread.
+     *
+     * @return the stack
+     */
+    static TraversalStack get() {
+        return STACKS.get();
+    }
+
+    /**
+     * Reserves a frame above the frames in use.
+     *
+     * @param size the amount of elements of the frame
+     * @return the first element of the frame
+     */
+    int push(int size) {
+        int base = top;
+        top += size;
+        if (top > nodes.length) {
+            int capacity = Math.max(top, 2 * nodes.length);
+            nodes = Arrays.copyOf(nodes, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+            shapes = Arrays.copyOf(shapes, capacity);
+        }
+        return base;
+    }
+
+    /**
+     * Takes a scratch ray above the rays in use, for the object space ray of an instance.
+     *
+     * @return the ray
+     */
+    ScratchRay pushRay() {
+        if (rayCount == rays.length) {
+            rays = Arrays.copyOf(rays, rayCount + 1);
+            rays[rayCount] = new ScratchRay();
+        }
+        return rays[rayCount++];
+    }
+
+    /**
+     * Releases the last scratch ray taken.
+     */
+    void popRay() {
+        --rayCount;
+    }
+
+    /**
+     * Takes a cell walk above the walks in use, for the traversal of a {@link RegularGrid}.
+     *
+     * @return the walk
+     */
+    RegularGrid.Walk pushWalk() {
+        if (walkCount == walks.length) {
+            walks = Arrays.copyOf(walks, walkCount + 1);
+            walks[walkCount] = new RegularGrid.Walk();
+        }
+        return walks[walkCount++];
+    }
+
+    /**
+     * Releases the last cell walk taken.
+     */
+    void popWalk() {
+        --walkCount;
+    }
+
+    /**
+     * Makes sure the packet buffers fit a packet traversal.
+     *
+     * @param depth the depth of the stack
+     * @param rays  the amount of rays of the packet
+     */
+    void reservePacket(int depth, int rays) {
+        if (packetNodes.length < depth) {
+            packetNodes = new int[depth];
+            packetMasks = new long[depth];
+            packetNearest = new double[depth];
+        }
+        if (packetEntries.length < depth * rays) packetEntries = new double[depth * rays];
+    }
+
+    /**
+     * Releases a frame and all the frames above it.
+     *
+     * @param base the first element of the frame, as returned by {@link #push(int)}
+     */
+    void pop(int base) {
+        top = base;
+    }
+}
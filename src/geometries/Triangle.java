@@ -25,7 +25,7 @@ public class Triangle extends Polygon {
      * @param c The third vertex of the triangle.
      */
     public Triangle(Point a, Point b, Point c) {
-        super(a, b, c);
+        super(false, a, b, c);
 
         Point p0 = vertices.get(0);
         Point p1 = vertices.get(1);
@@ -58,40 +58,60 @@ public class Triangle extends Polygon {
      */
     @Override
     public List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        Point p0 = ray.getHead();
-        Vector dir = ray.getDirection();
-
-        Vector h = dir.crossProduct(edge2);
-        double a = alignZero(edge1.dotProduct(h));
+        HitRecord hit = new HitRecord().reset(Double.POSITIVE_INFINITY);
+        return intersect(ray, hit) ? List.of(new Intersection(this, ray, hit.t)) : null;
+    }
+    /**
+     * Intersects the ray with the triangle by the Moller-Trumbore algorithm in plain double
+     * arithmetic, recording the barycentric coordinates of the hit.
+     *
+     * @param ray the ray to intersect with the triangle
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+        double e1x = edge1.getX(), e1y = edge1.getY(), e1z = edge1.getZ();
+        double e2x = edge2.getX(), e2y = edge2.getY(), e2z = edge2.getZ();
+
+        double hx = dy * e2z - dz * e2y;
+        double hy = dz * e2x - dx * e2z;
+        double hz = dx * e2y - dy * e2x;
+        double a = alignZero(e1x * hx + e1y * hy + e1z * hz);
         // The ray is parallel to the triangle's plane
         if (isZero(a)) {
-            return null;
+            return false;
         }
 
         double f = 1.0 / a;
-        Vector s = p0.subtract(vertices.getFirst());
-        double u = alignZero(f * s.dotProduct(h));
+        Point v0 = vertices.getFirst();
+        double sx = ray.getHeadX() - v0.getX(), sy = ray.getHeadY() - v0.getY(), sz = ray.getHeadZ() - v0.getZ();
+        double u = alignZero(f * (sx * hx + sy * hy + sz * hz));
         // The intersection is outside the triangle
         if (u <= 0 || u >= 1) {
-            return null;
+            return false;
         }
 
-        Vector q = s.crossProduct(edge1);
-        double v = alignZero(f * dir.dotProduct(q));
-
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = alignZero(f * (dx * qx + dy * qy + dz * qz));
         // The intersection is outside the triangle
         if (v <= 0 || u + v >= 1) {
-            return null;
+            return false;
         }
 
-        double t = alignZero(f * edge2.dotProduct(q));
+        double t = alignZero(f * (e2x * qx + e2y * qy + e2z * qz));
         // The intersection is behind the ray's origin
-        if (t <= 0) {
-            return null;
+        if (t <= 0 || !hit.record(t, this)) {
+            return false;
         }
-
-        return List.of(new Intersection(this, ray.getPoint(t)));
+        hit.u = u;
+        hit.v = v;
+        return true;
     }
+
     @Override
     public void setBoundingBox() {
         Point p0 = vertices.get(0);
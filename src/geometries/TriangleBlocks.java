@@ -0,0 +1,178 @@
+package geometries;
+
+import primitives.Point;
+
+import java.util.List;
+
+/**
+ * Triangles ({@link Triangle}s and faces of {@link TriangleMesh}es) packed in blocks of four,
+ * in structure-of-arrays layout, for the leaves of the wide hierarchy.
+ * <p>
+ * Each block stores the first vertex and the two edges of its four triangles component after
+ * component ({@code v0x[4], v0y[4], v0z[4], e1x[4], ..., e2z[4]}), so one ray is intersected with
+ * the four triangles together. Unused lanes hold degenerate triangles which are never hit.
+ * </p>
+ * When the Java Vector API is available, a block is intersected in 256-bit vector instructions,
+ * four lanes per operation (see {@link LaneKernel}). Otherwise a branch-free scalar loop over the lanes
+ * is used. C2 does not turn that loop into SIMD instructions - with its constant trip count of four it is
+ * unrolled into straight-line scalar code, and timing it with {@code -XX:-UseSuperWord} gives the same
+ * results as with the vectorizer on.
+ * <p>
+ * The kernel repeats the arithmetic of {@link Triangle#intersect(primitives.Ray, HitRecord)}, so both
+ * find exactly the same hits.
+ * </p>
+ */
+final class TriangleBlocks {
+    /** Amount of triangles per block */
+    static final int WIDTH = 4;
+    /** Amount of doubles per block in the data array */
+    private static final int STRIDE = 9 * WIDTH;
+    /** Magnitude below which a number is considered zero, as in {@link primitives.Util#isZero(double)} */
+    static final double ZERO = 0x1p-40;
+
+    /**
+     * The packed vertices and edges, nine groups of four lanes per block.
+     */
+    private final double[] data;
+
+    /**
+     * The triangles of the lanes, null for unused lanes.
+     */
+    private final Geometry[] triangles;
+
+    /**
+     * Packs the triangles into blocks, in the order of the list.
+     *
+     * @param triangles the triangles, each block of four starting at a multiple of four,
+     *                  with nulls in the unused lanes
+     */
+    TriangleBlocks(List<Geometry> triangles) {
+        int blocks = (triangles.size() + WIDTH - 1) / WIDTH;
+        this.triangles = new Geometry[blocks * WIDTH];
+        data = new double[blocks * STRIDE];
+        for (int i = 0; i < triangles.size(); ++i) {
+            Geometry triangle = triangles.get(i);
+            if (triangle == null) continue;
+            this.triangles[i] = triangle;
+            int b = i / WIDTH * STRIDE + i % WIDTH;
+            switch (triangle) {
+                case Triangle t -> {
+                    Point v0 = t.vertices.getFirst();
+                    pack(b, v0.getX(), v0.getY(), v0.getZ(), t.edge1.getX(), t.edge1.getY(), t.edge1.getZ(),
+                            t.edge2.getX(), t.edge2.getY(), t.edge2.getZ());
+                }
+                case TriangleMesh.Face f -> pack(b, f.coordinate(0, 0), f.coordinate(0, 1), f.coordinate(0, 2),
+                        f.coordinate(1, 0) - f.coordinate(0, 0), f.coordinate(1, 1) - f.coordinate(0, 1),
+                        f.coordinate(1, 2) - f.coordinate(0, 2), f.coordinate(2, 0) - f.coordinate(0, 0),
+                        f.coordinate(2, 1) - f.coordinate(0, 1), f.coordinate(2, 2) - f.coordinate(0, 2));
+                default -> throw new IllegalArgumentException("Not a triangle: " + triangle);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a shape is a triangle which can be packed.
+     *
+     * @param shape the shape
+     * @return true for a {@link Triangle} or a face of a {@link TriangleMesh}
+     */
+    static boolean isTriangle(Intersectable shape) {
+        return shape instanceof Triangle || shape instanceof TriangleMesh.Face;
+    }
+
+    /**
+     * Stores the first vertex and the edges of a triangle in its lane.
+     */
+    private void pack(int b, double v0x, double v0y, double v0z,
+                      double e1x, double e1y, double e1z, double e2x, double e2y, double e2z) {
+        data[b] = v0x;
+        data[b + WIDTH] = v0y;
+        data[b + 2 * WIDTH] = v0z;
+        data[b + 3 * WIDTH] = e1x;
+        data[b + 4 * WIDTH] = e1y;
+        data[b + 5 * WIDTH] = e1z;
+        data[b + 6 * WIDTH] = e2x;
+        data[b + 7 * WIDTH] = e2y;
+        data[b + 8 * WIDTH] = e2z;
+    }
+
+    /**
+     * Returns the triangle of a lane.
+     *
+     * @param block the block index
+     * @param lane  the lane in the block
+     * @return the triangle, or null for an unused lane
+     */
+    Geometry get(int block, int lane) {
+        return triangles[block * WIDTH + lane];
+    }
+
+    /**
+     * Intersects a ray with the four triangles of a block by the Moller-Trumbore algorithm,
+     * by the Vector API kernel if it is available, or else by the scalar loop.
+     *
+     * @param block the block index
+     * @param ox    the X coordinate of the ray head
+     * @param oy    the Y coordinate of the ray head
+     * @param oz    the Z coordinate of the ray head
+     * @param dx    the X component of the ray direction
+     * @param dy    the Y component of the ray direction
+     * @param dz    the Z component of the ray direction
+     * @param t     output - the distance of the hit of each lane, or positive infinity if it is missed
+     * @param u     output - the barycentric coordinate of the hit of each lane relative to the second vertex
+     * @param v     output - the barycentric coordinate of the hit of each lane relative to the third vertex
+     */
+    void intersect(int block, double ox, double oy, double oz, double dx, double dy, double dz,
+                   double[] t, double[] u, double[] v) {
+        LaneKernel kernel = LaneKernel.VECTOR;
+        if (kernel != null) kernel.intersectTriangles(data, block * STRIDE, ox, oy, oz, dx, dy, dz, t, u, v);
+        else intersectLanes(data, block * STRIDE, ox, oy, oz, dx, dy, dz, t, u, v);
+    }
+
+    /**
+     * The scalar lane loop of {@link #intersect}.
+     *
+     * @param data the packed triangles
+     * @param b    the first element of the block
+     * @param ox   the X coordinate of the ray head
+     * @param oy   the Y coordinate of the ray head
+     * @param oz   the Z coordinate of the ray head
+     * @param dx   the X component of the ray direction
+     * @param dy   the Y component of the ray direction
+     * @param dz   the Z component of the ray direction
+     * @param t    output - the distance of the hit of each lane, or positive infinity if it is missed
+     * @param u    output - the barycentric coordinate of the hit of each lane relative to the second vertex
+     * @param v    output - the barycentric coordinate of the hit of each lane relative to the third vertex
+     */
+    static void intersectLanes(double[] data, int b, double ox, double oy, double oz, double dx, double dy, double dz,
+                               double[] t, double[] u, double[] v) {
+        for (int i = 0; i < WIDTH; ++i) {
+            double e1x = data[b + 3 * WIDTH + i], e1y = data[b + 4 * WIDTH + i], e1z = data[b + 5 * WIDTH + i];
+            double e2x = data[b + 6 * WIDTH + i], e2y = data[b + 7 * WIDTH + i], e2z = data[b + 8 * WIDTH + i];
+
+            double hx = dy * e2z - dz * e2y;
+            double hy = dz * e2x - dx * e2z;
+            double hz = dx * e2y - dy * e2x;
+            double a = e1x * hx + e1y * hy + e1z * hz;
+            double f = 1.0 / a;
+
+            double sx = ox - data[b + i], sy = oy - data[b + WIDTH + i], sz = oz - data[b + 2 * WIDTH + i];
+            double laneU = f * (sx * hx + sy * hy + sz * hz);
+            laneU = Math.abs(laneU) < ZERO ? 0 : laneU;
+
+            double qx = sy * e1z - sz * e1y;
+            double qy = sz * e1x - sx * e1z;
+            double qz = sx * e1y - sy * e1x;
+            double laneV = f * (dx * qx + dy * qy + dz * qz);
+            laneV = Math.abs(laneV) < ZERO ? 0 : laneV;
+            double laneT = f * (e2x * qx + e2y * qy + e2z * qz);
+            laneT = Math.abs(laneT) < ZERO ? 0 : laneT;
+
+            // Every condition is evaluated, so a NaN of a degenerate lane just fails them
+            boolean hit = Math.abs(a) >= ZERO & laneU > 0 & laneU < 1 & laneV > 0 & laneU + laneV < 1 & laneT > 0;
+            t[i] = hit ? laneT : Double.POSITIVE_INFINITY;
+            u[i] = laneU;
+            v[i] = laneV;
+        }
+    }
+}
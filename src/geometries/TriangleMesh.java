@@ -0,0 +1,294 @@
+package geometries;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Indexed triangle mesh, whose triangles share a single vertex buffer.
+ * <p>
+ * The coordinates of the vertices are kept in one {@code double[]} (x, y, z of each vertex),
+ * and every triangle is three indices into it in one {@code int[]}, so a vertex shared by
+ * adjacent triangles is stored once. The triangles are lightweight faces holding only a reference
+ * to the mesh and their position in the index buffer - no points, plane, edges or box are stored
+ * per triangle, and the box of a face is calculated on demand.
+ * The vertex buffer may also be a {@code float[]}, halving the memory of large meshes; the coordinates
+ * are widened to double when read, so the intersections and the shading are calculated in double precision.
+ * </p>
+ * The mesh is a collection of its faces, so it can be added to any {@link Geometries}, and a BVH
+ * built over it treats every face as a separate primitive. All the faces share the material and
+ * the emission of the mesh.
+ */
+public final class TriangleMesh extends Geometries {
+    /**
+     * The coordinates of the vertices, three per vertex, or null if they are stored in single precision.
+     */
+    private final double[] vertices;
+
+    /**
+     * The coordinates of the vertices in single precision, or null if they are stored in double precision.
+     */
+    private final float[] floatVertices;
+
+    /**
+     * The vertex indices of the triangles, three per triangle.
+     */
+    private final int[] indices;
+
+    /**
+     * The faces of the mesh.
+     */
+    private final Face[] faces;
+
+    /**
+     * A single triangle of the mesh.
+     */
+    static final class Face extends Geometry {
+        /** The mesh of the face */
+        private final TriangleMesh mesh;
+        /** Position of the first vertex index of the face in the index buffer */
+        private final int first;
+
+        /**
+         * Constructs a face of a mesh.
+         *
+         * @param mesh  the mesh
+         * @param first position of the first vertex index of the face in the index buffer
+         */
+        private Face(TriangleMesh mesh, int first) {
+            this.mesh = mesh;
+            this.first = first;
+        }
+
+        /**
+         * Returns a coordinate of a vertex of the face.
+         *
+         * @param corner the vertex of the face, 0 to 2
+         * @param axis   the axis, 0 to 2 for X, Y and Z
+         * @return the coordinate
+         */
+        double coordinate(int corner, int axis) {
+            return mesh.coordinate(mesh.indices[first + corner] * 3 + axis);
+        }
+
+        /**
+         * Returns the normal of the face, the same for all its points.
+         * It is calculated the same way as the normal of a {@link Triangle} with the same vertices.
+         *
+         * @param point the point on the face (not used)
+         * @return the normal
+         */
+        @Override
+        public Vector getNormal(Point point) {
+            Vector edge1 = new Vector(coordinate(1, 0) - coordinate(0, 0),
+                    coordinate(1, 1) - coordinate(0, 1), coordinate(1, 2) - coordinate(0, 2));
+            Vector edge2 = new Vector(coordinate(2, 0) - coordinate(0, 0),
+                    coordinate(2, 1) - coordinate(0, 1), coordinate(2, 2) - coordinate(0, 2));
+            return edge1.crossProduct(edge2).normalize();
+        }
+
+        /**
+         * Calculates the box of the face from the vertex buffer on every call.
+         * The traversal does not use it, see {@link #entryDistance(Ray, double, double)}.
+         *
+         * @return the box of the face
+         */
+        @Override
+        public BoundingBox getBoundingBox() {
+            return new BoundingBox(
+                    Math.min(Math.min(coordinate(0, 0), coordinate(1, 0)), coordinate(2, 0)),
+                    Math.max(Math.max(coordinate(0, 0), coordinate(1, 0)), coordinate(2, 0)),
+                    Math.min(Math.min(coordinate(0, 1), coordinate(1, 1)), coordinate(2, 1)),
+                    Math.max(Math.max(coordinate(0, 1), coordinate(1, 1)), coordinate(2, 1)),
+                    Math.min(Math.min(coordinate(0, 2), coordinate(1, 2)), coordinate(2, 2)),
+                    Math.max(Math.max(coordinate(0, 2), coordinate(1, 2)), coordinate(2, 2)));
+        }
+
+        @Override
+        public void setBoundingBox() {
+            // The box is not stored, see getBoundingBox()
+        }
+
+        /**
+         * Tests the box of the face, calculated from the vertex buffer, without creating it.
+         */
+        @Override
+        protected double entryDistance(Ray ray, double tMin, double tMax) {
+            double x0 = coordinate(0, 0), x1 = coordinate(1, 0), x2 = coordinate(2, 0);
+            double y0 = coordinate(0, 1), y1 = coordinate(1, 1), y2 = coordinate(2, 1);
+            double z0 = coordinate(0, 2), z1 = coordinate(1, 2), z2 = coordinate(2, 2);
+            return BoundingBox.entryDistance(ray,
+                    Math.min(Math.min(x0, x1), x2), Math.max(Math.max(x0, x1), x2),
+                    Math.min(Math.min(y0, y1), y2), Math.max(Math.max(y0, y1), y2),
+                    Math.min(Math.min(z0, z1), z2), Math.max(Math.max(z0, z1), z2), tMin, tMax);
+        }
+
+        @Override
+        protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            HitRecord hit = new HitRecord().reset(Double.POSITIVE_INFINITY);
+            return intersect(ray, hit) ? List.of(new Intersection(this, ray, hit.t)) : null;
+        }
+
+        /**
+         * Intersects the ray with the face by the Moller-Trumbore algorithm,
+         * with the same arithmetic as {@link Triangle#intersect(Ray, HitRecord)}.
+         *
+         * @param ray the ray to intersect with the face
+         * @param hit the closest hit so far, updated if a closer one is found
+         * @return true if a closer hit was recorded
+         */
+        @Override
+        protected boolean intersect(Ray ray, HitRecord hit) {
+            TriangleMesh m = mesh;
+            int a = m.indices[first] * 3, b = m.indices[first + 1] * 3, c = m.indices[first + 2] * 3;
+            double v0x = m.coordinate(a), v0y = m.coordinate(a + 1), v0z = m.coordinate(a + 2);
+            double e1x = m.coordinate(b) - v0x, e1y = m.coordinate(b + 1) - v0y, e1z = m.coordinate(b + 2) - v0z;
+            double e2x = m.coordinate(c) - v0x, e2y = m.coordinate(c + 1) - v0y, e2z = m.coordinate(c + 2) - v0z;
+
+            double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+
+            double hx = dy * e2z - dz * e2y;
+            double hy = dz * e2x - dx * e2z;
+            double hz = dx * e2y - dy * e2x;
+            double det = alignZero(e1x * hx + e1y * hy + e1z * hz);
+            // The ray is parallel to the face's plane
+            if (isZero(det)) return false;
+
+            double f = 1.0 / det;
+            double sx = ray.getHeadX() - v0x, sy = ray.getHeadY() - v0y, sz = ray.getHeadZ() - v0z;
+            double u = alignZero(f * (sx * hx + sy * hy + sz * hz));
+            if (u <= 0 || u >= 1) return false;
+
+            double qx = sy * e1z - sz * e1y;
+            double qy = sz * e1x - sx * e1z;
+            double qz = sx * e1y - sy * e1x;
+            double v = alignZero(f * (dx * qx + dy * qy + dz * qz));
+            if (v <= 0 || u + v >= 1) return false;
+
+            double t = alignZero(f * (e2x * qx + e2y * qy + e2z * qz));
+            if (t <= 0 || !hit.record(t, this)) return false;
+            hit.u = u;
+            hit.v = v;
+            return true;
+        }
+    }
+
+    /**
+     * Constructs a mesh from its vertex and index buffers. The buffers are used as is, not copied.
+     *
+     * @param vertices the coordinates of the vertices, three per vertex (x, y, z)
+     * @param indices  the vertex indices of the triangles, three per triangle
+     * @throws IllegalArgumentException if a buffer is not made of triples, an index is out of range,
+     *                                  or a triangle is degenerate
+     */
+    public TriangleMesh(double[] vertices, int[] indices) {
+        this(vertices, null, vertices.length, indices);
+    }
+
+    /**
+     * Constructs a mesh from a single precision vertex buffer and an index buffer.
+     * The buffers are used as is, not copied.
+     *
+     * @param vertices the coordinates of the vertices, three per vertex (x, y, z)
+     * @param indices  the vertex indices of the triangles, three per triangle
+     * @throws IllegalArgumentException if a buffer is not made of triples, an index is out of range,
+     *                                  or a triangle is degenerate
+     */
+    public TriangleMesh(float[] vertices, int[] indices) {
+        this(null, vertices, vertices.length, indices);
+    }
+
+    /**
+     * Constructs a mesh from the vertex buffer of either precision and the index buffer.
+     *
+     * @param vertices      the double precision vertex buffer, or null
+     * @param floatVertices the single precision vertex buffer, or null
+     * @param length        the length of the vertex buffer
+     * @param indices       the index buffer
+     */
+    private TriangleMesh(double[] vertices, float[] floatVertices, int length, int[] indices) {
+        if (length % 3 != 0)
+            throw new IllegalArgumentException("Vertex buffer must hold three coordinates per vertex");
+        if (indices.length % 3 != 0)
+            throw new IllegalArgumentException("Index buffer must hold three indices per triangle");
+        int vertexCount = length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Vertex index out of range: " + index);
+        this.vertices = vertices;
+        this.floatVertices = floatVertices;
+        this.indices = indices;
+
+        faces = new Face[indices.length / 3];
+        for (int i = 0; i < faces.length; ++i) {
+            Face face = new Face(this, i * 3);
+            double e1x = face.coordinate(1, 0) - face.coordinate(0, 0);
+            double e1y = face.coordinate(1, 1) - face.coordinate(0, 1);
+            double e1z = face.coordinate(1, 2) - face.coordinate(0, 2);
+            double e2x = face.coordinate(2, 0) - face.coordinate(0, 0);
+            double e2y = face.coordinate(2, 1) - face.coordinate(0, 1);
+            double e2z = face.coordinate(2, 2) - face.coordinate(0, 2);
+            if (isZero(e1y * e2z - e1z * e2y) && isZero(e1z * e2x - e1x * e2z) && isZero(e1x * e2y - e1y * e2x))
+                throw new IllegalArgumentException("Triangle " + i + " of the mesh is degenerate");
+            faces[i] = face;
+        }
+        add(faces);
+    }
+
+    /**
+     * Returns an element of the vertex buffer, in either precision.
+     *
+     * @param i the position in the vertex buffer
+     * @return the coordinate
+     */
+    private double coordinate(int i) {
+        return vertices != null ? vertices[i] : floatVertices[i];
+    }
+
+    /**
+     * Returns the amount of triangles in the mesh.
+     *
+     * @return the amount of triangles
+     */
+    public int getFaceCount() {
+        return faces.length;
+    }
+
+    /**
+     * Returns a vertex of the mesh.
+     *
+     * @param index the vertex index
+     * @return the vertex
+     */
+    public Point getVertex(int index) {
+        return new Point(coordinate(index * 3), coordinate(index * 3 + 1), coordinate(index * 3 + 2));
+    }
+
+    /**
+     * Sets the material of all the triangles of the mesh.
+     *
+     * @param material the material to set
+     * @return this mesh instance for chaining
+     */
+    public TriangleMesh setMaterial(Material material) {
+        for (Face face : faces) face.setMaterial(material);
+        return this;
+    }
+
+    /**
+     * Sets the emission color of all the triangles of the mesh.
+     *
+     * @param emission the emission color to set
+     * @return this mesh instance for chaining
+     */
+    public TriangleMesh setEmission(Color emission) {
+        for (Face face : faces) face.setEmission(emission);
+        return this;
+    }
+}
@@ -0,0 +1,668 @@
+package geometries;
+
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compiled, immutable 4-wide Bounding Volume Hierarchy (QBVH).
+ * <p>
+ * The binary hierarchy of nested {@link Geometries} objects is collapsed so that every node
+ * has up to four children: the largest inner children are repeatedly replaced by their own
+ * children until four slots are filled. This halves the depth of the tree.
+ * The bounds of the four children of a node are stored contiguously, component after component
+ * ({@code minX[4], minY[4], minZ[4], maxX[4], maxY[4], maxZ[4]}), so the four boxes are tested
+ * together, one ray against the four boxes. When the Java Vector API is available the four lanes are
+ * tested in 256-bit vector instructions (see {@link LaneKernel}); otherwise a branch-free scalar loop
+ * over the lanes is used, which C2 unrolls into straight-line scalar code.
+ * The bounds may be stored in single precision (see {@link #WideBVH(Geometries, boolean)}).
+ * </p>
+ * Each child slot is either an inner node or a leaf - a range of primitives.
+ * Unused slots have empty bounds and are never hit.
+ * The triangles of the leaves are packed in blocks of four (see {@link TriangleBlocks}), and a subtree
+ * of up to four triangles is collapsed into a single leaf, so a leaf is intersected the same way a node is:
+ * four triangles at once in one loop over the lanes.
+ * The traversal stacks, the child entry lanes and the triangle lanes are taken from the
+ * {@link TraversalStack} of the thread.
+ */
+public class WideBVH extends Intersectable {
+    /** Amount of children per node */
+    static final int WIDTH = 4;
+    /** Amount of doubles per node in the bounds array */
+    private static final int BOUNDS_STRIDE = 6 * WIDTH;
+
+    /**
+     * Bounds of the children of each node, as six groups of four lanes:
+     * minX, minY, minZ, maxX, maxY, maxZ.
+     * Null in single precision.
+     */
+    private final double[] bounds;
+
+    /**
+     * The bounds in single precision, rounded outward, or null in double precision.
+     */
+    private final float[] floatBounds;
+
+    /**
+     * Target of each child slot: the node index of an inner child, or the first primitive of a leaf.
+     */
+    private final int[] targets;
+
+    /**
+     * Amount of primitives of each child slot, other than its packed triangles, or -1 for an inner child.
+     */
+    private final int[] counts;
+
+    /**
+     * First triangle block of each leaf slot.
+     */
+    private final int[] blockStarts;
+
+    /**
+     * Amount of triangle blocks of each leaf slot.
+     */
+    private final int[] blockCounts;
+
+    /**
+     * The packed triangles of the leaves.
+     */
+    private final TriangleBlocks blocks;
+
+    /**
+     * The primitives, grouped by their leaves.
+     */
+    private final Intersectable[] primitives;
+
+    /**
+     * The maximal depth of the traversal stack.
+     */
+    private final int stackSize;
+
+    /**
+     * An element of the collapsed tree during the build: either an inner collection of the
+     * binary tree, a group of primitives forming a leaf, or a group of elements
+     * which must be gathered under a new node because a node has too many children.
+     */
+    private static class Item {
+        /** An inner collection of the binary tree, or null */
+        Geometries node;
+        /** Primitives of a leaf, or null */
+        List<Intersectable> prims;
+        /** Elements gathered under a new node, or null */
+        List<Item> group;
+    }
+
+    /** Bounds of the nodes during the build, 6 per node (min, max) */
+    private final List<double[]> buildBounds = new ArrayList<>();
+    /** Child slot targets during the build */
+    private final List<int[]> buildTargets = new ArrayList<>();
+    /** Child slot primitive counts during the build */
+    private final List<int[]> buildCounts = new ArrayList<>();
+    /** Child slot triangle blocks during the build, the first block and the amount of blocks of each slot */
+    private final List<int[]> buildBlocks = new ArrayList<>();
+    /** Primitives during the build */
+    private final List<Intersectable> buildPrims = new ArrayList<>();
+    /** Packed triangles during the build, with nulls in the unused lanes */
+    private final List<Geometry> buildTriangles = new ArrayList<>();
+    /** Maximal node depth during the build */
+    private int maxDepth = 0;
+
+    /**
+     * Collapses the hierarchy of the given collection into a 4-wide hierarchy.
+     * Every nested {@link Geometries} is an inner node, any other shape is a primitive.
+     * The bounding boxes of the shapes must be already set.
+     *
+     * @param root the root collection of the hierarchy
+     */
+    public WideBVH(Geometries root) {
+        this(root, false);
+    }
+
+    /**
+     * Collapses the hierarchy of the given collection into a 4-wide hierarchy, optionally storing
+     * the bounds of the children in single precision. The float bounds are rounded outward,
+     * so no hit is lost, and take half the memory and cache lines of the double ones.
+     *
+     * @param root            the root collection of the hierarchy
+     * @param singlePrecision true to store the bounds as floats
+     */
+    public WideBVH(Geometries root, boolean singlePrecision) {
+        double[] total = new double[6];
+        build(expand(root), total, 1);
+
+        int count = buildTargets.size();
+        double[] built = new double[count * BOUNDS_STRIDE];
+        targets = new int[count * WIDTH];
+        counts = new int[count * WIDTH];
+        blockStarts = new int[count * WIDTH];
+        blockCounts = new int[count * WIDTH];
+        for (int i = 0; i < count; ++i) {
+            System.arraycopy(buildBounds.get(i), 0, built, i * BOUNDS_STRIDE, BOUNDS_STRIDE);
+            System.arraycopy(buildTargets.get(i), 0, targets, i * WIDTH, WIDTH);
+            System.arraycopy(buildCounts.get(i), 0, counts, i * WIDTH, WIDTH);
+            int[] nodeBlocks = buildBlocks.get(i);
+            for (int j = 0; j < WIDTH; ++j) {
+                blockStarts[i * WIDTH + j] = nodeBlocks[j];
+                blockCounts[i * WIDTH + j] = nodeBlocks[j + WIDTH];
+            }
+        }
+        if (singlePrecision) {
+            bounds = null;
+            floatBounds = new float[built.length];
+            for (int i = 0; i < built.length; ++i)
+                floatBounds[i] = i % BOUNDS_STRIDE < 3 * WIDTH
+                        ? BoundingBox.floatBelow(built[i]) : BoundingBox.floatAbove(built[i]);
+        } else {
+            bounds = built;
+            floatBounds = null;
+        }
+        primitives = buildPrims.toArray(new Intersectable[0]);
+        blocks = new TriangleBlocks(buildTriangles);
+        stackSize = WIDTH * (maxDepth + 1);
+        buildBounds.clear();
+        buildTargets.clear();
+        buildCounts.clear();
+        buildBlocks.clear();
+        buildPrims.clear();
+        buildTriangles.clear();
+
+        this.boundingBox = total[0] == Double.NEGATIVE_INFINITY || total[0] > total[3] ? null
+                : new BoundingBox(total[0], total[3], total[1], total[4], total[2], total[5]);
+    }
+
+    /**
+     * Splits a collection into elements: its inner collections, and one leaf of all its other shapes.
+     *
+     * @param geometries the collection
+     * @return the elements
+     */
+    private static List<Item> expand(Geometries geometries) {
+        List<Item> items = new ArrayList<>();
+        List<Intersectable> prims = new ArrayList<>();
+        for (Intersectable shape : geometries.getShapes()) {
+            if (shape instanceof Geometries child && !child.isFlattened()) {
+                Item item = new Item();
+                item.node = child;
+                items.add(item);
+            } else prims.add(shape);
+        }
+        if (!prims.isEmpty()) {
+            Item item = new Item();
+            item.prims = prims;
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Checks whether an inner collection of the binary tree has inner collections itself.
+     */
+    private static boolean hasInnerNodes(Geometries geometries) {
+        for (Intersectable shape : geometries.getShapes())
+            if (shape instanceof Geometries child && !child.isFlattened()) return true;
+        return false;
+    }
+
+    /**
+     * Collects the primitives of a subtree of the binary tree if they fit into one triangle block.
+     *
+     * @param geometries the root collection of the subtree
+     * @return the triangles of the subtree, or null if it has other primitives or too many triangles
+     */
+    private static List<Intersectable> packable(Geometries geometries) {
+        List<Intersectable> triangles = new ArrayList<>();
+        return collectTriangles(geometries, triangles) ? triangles : null;
+    }
+
+    /**
+     * Adds the triangles of a subtree to a list, while they fit into one triangle block.
+     *
+     * @return false if the subtree has other primitives or too many triangles
+     */
+    private static boolean collectTriangles(Geometries geometries, List<Intersectable> triangles) {
+        for (Intersectable shape : geometries.getShapes()) {
+            if (shape instanceof Geometries child && !child.isFlattened()) {
+                if (!collectTriangles(child, triangles)) return false;
+            } else if (TriangleBlocks.isTriangle(shape) && triangles.size() < TriangleBlocks.WIDTH) {
+                triangles.add(shape);
+            } else return false;
+        }
+        return true;
+    }
+
+    /**
+     * Surface area of the box of a collection, infinite if it has no box.
+     */
+    private static double area(Geometries geometries) {
+        BoundingBox box = geometries.getBoundingBox();
+        return box == null ? Double.POSITIVE_INFINITY : box.surfaceArea();
+    }
+
+    /**
+     * Builds a wide node of the given elements.
+     *
+     * @param items the elements, which are reorganized
+     * @param total output - the bounds of the whole node {minX, minY, minZ, maxX, maxY, maxZ}
+     * @param depth the depth of the node
+     * @return the node index
+     */
+    private int build(List<Item> items, double[] total, int depth) {
+        maxDepth = Math.max(maxDepth, depth);
+
+        // Open up the largest inner children while their children fit into the free slots
+        while (items.size() < WIDTH) {
+            int best = -1;
+            double bestArea = -1;
+            for (int i = 0; i < items.size(); ++i) {
+                Geometries node = items.get(i).node;
+                if (node == null || !hasInnerNodes(node) || packable(node) != null) continue;
+                double area = area(node);
+                if (area > bestArea && items.size() - 1 + expand(node).size() <= WIDTH) {
+                    best = i;
+                    bestArea = area;
+                }
+            }
+            if (best < 0) break;
+            items.addAll(expand(items.remove(best).node));
+        }
+
+        // Too many children - gather them under new nodes
+        if (items.size() > WIDTH) {
+            List<Item> groups = new ArrayList<>();
+            int size = items.size();
+            for (int g = 0; g < WIDTH; ++g) {
+                Item group = new Item();
+                group.group = new ArrayList<>(items.subList(g * size / WIDTH, (g + 1) * size / WIDTH));
+                groups.add(group);
+            }
+            items = groups;
+        }
+
+        int index = buildTargets.size();
+        double[] nodeBounds = new double[BOUNDS_STRIDE];
+        int[] nodeTargets = new int[WIDTH];
+        int[] nodeCounts = new int[WIDTH];
+        int[] nodeBlocks = new int[2 * WIDTH];
+        buildBounds.add(nodeBounds);
+        buildTargets.add(nodeTargets);
+        buildCounts.add(nodeCounts);
+        buildBlocks.add(nodeBlocks);
+
+        resetBounds(total);
+        double[] slot = new double[6];
+        for (int i = 0; i < WIDTH; ++i) {
+            resetBounds(slot);
+            if (i < items.size()) {
+                Item item = items.get(i);
+                List<Intersectable> prims = item.prims;
+                if (item.node != null) prims = hasInnerNodes(item.node) ? packable(item.node) : item.node.getShapes();
+                if (item.group != null) {
+                    nodeTargets[i] = build(item.group, slot, depth + 1);
+                    nodeCounts[i] = -1;
+                } else if (prims == null) {
+                    nodeTargets[i] = build(expand(item.node), slot, depth + 1);
+                    nodeCounts[i] = -1;
+                } else {
+                    // The triangles go to the blocks, the other primitives stay in their range
+                    nodeTargets[i] = buildPrims.size();
+                    nodeBlocks[i] = buildTriangles.size() / TriangleBlocks.WIDTH;
+                    for (Intersectable prim : prims) {
+                        if (TriangleBlocks.isTriangle(prim)) buildTriangles.add((Geometry) prim);
+                        else buildPrims.add(prim);
+                        growBounds(slot, prim.getBoundingBox());
+                    }
+                    while (buildTriangles.size() % TriangleBlocks.WIDTH != 0) buildTriangles.add(null);
+                    nodeCounts[i] = buildPrims.size() - nodeTargets[i];
+                    nodeBlocks[i + WIDTH] = buildTriangles.size() / TriangleBlocks.WIDTH - nodeBlocks[i];
+                }
+            }
+            for (int c = 0; c < 6; ++c) nodeBounds[c * WIDTH + i] = slot[c];
+            for (int a = 0; a < 3; ++a) {
+                total[a] = Math.min(total[a], slot[a]);
+                total[a + 3] = Math.max(total[a + 3], slot[a + 3]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Resets bounds stored as {minX, minY, minZ, maxX, maxY, maxZ} to an empty box.
+     */
+    private static void resetBounds(double[] b) {
+        b[0] = b[1] = b[2] = Double.POSITIVE_INFINITY;
+        b[3] = b[4] = b[5] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Grows bounds to contain a box, or to infinity if there is no finite box.
+     */
+    private static void growBounds(double[] b, BoundingBox box) {
+        if (box == null || Double.isInfinite(box.minX) || Double.isInfinite(box.maxX)) {
+            b[0] = b[1] = b[2] = Double.NEGATIVE_INFINITY;
+            b[3] = b[4] = b[5] = Double.POSITIVE_INFINITY;
+            return;
+        }
+        b[0] = Math.min(b[0], box.minX);
+        b[1] = Math.min(b[1], box.minY);
+        b[2] = Math.min(b[2], box.minZ);
+        b[3] = Math.max(b[3], box.maxX);
+        b[4] = Math.max(b[4], box.maxY);
+        b[5] = Math.max(b[5], box.maxZ);
+    }
+
+    /**
+     * Returns the amount of nodes in the hierarchy.
+     *
+     * @return the amount of nodes
+     */
+    public int getNodeCount() {
+        return targets.length / WIDTH;
+    }
+
+    /**
+     * Checks whether the boxes and the triangles of the lanes are tested by the Java Vector API kernel.
+     * The kernel is used when the JVM runs with {@code --add-modules jdk.incubator.vector}
+     * on a processor with vectors of four doubles, see {@link LaneKernel}.
+     *
+     * @return true if the vector kernel is used, false if the scalar loops are
+     */
+    public static boolean isVectorized() {
+        return LaneKernel.VECTOR != null;
+    }
+
+    /**
+     * Checks whether the bounds are stored in single precision.
+     *
+     * @return true if the bounds are floats
+     */
+    public boolean isSinglePrecision() {
+        return floatBounds != null;
+    }
+
+    @Override
+    public void setBoundingBox() {
+        // The bounds are compiled once and never change
+    }
+
+    /**
+     * Tests the ray against the four child boxes of a node at once.
+     * The near and far planes of each slab are selected once for all the lanes by the sign
+     * flags cached in the ray, so the lane loop is free of branches on the direction.
+     * The lanes are tested by the Vector API kernel if it is available (see {@link LaneKernel}),
+     * or else by the scalar loop.
+     *
+     * @param node    the node index
+     * @param ray     the ray, with its cached inverse direction
+     * @param tMax    the distance beyond which the boxes are considered missed
+     * @param entries output - the entry distance of each child box, or positive infinity if it is missed
+     */
+    private void testNode(int node, Ray ray, double ox, double oy, double oz, double tMax, double[] entries) {
+        int b = node * BOUNDS_STRIDE;
+        int nearX = b + 3 * WIDTH * ray.getSignX(), farX = b + 3 * WIDTH - 3 * WIDTH * ray.getSignX();
+        int nearY = b + WIDTH + 3 * WIDTH * ray.getSignY(), farY = b + 4 * WIDTH - 3 * WIDTH * ray.getSignY();
+        int nearZ = b + 2 * WIDTH + 3 * WIDTH * ray.getSignZ(), farZ = b + 5 * WIDTH - 3 * WIDTH * ray.getSignZ();
+        double invDx = ray.getInvDirX(), invDy = ray.getInvDirY(), invDz = ray.getInvDirZ();
+        LaneKernel kernel = LaneKernel.VECTOR;
+        if (bounds == null) {
+            if (kernel != null)
+                kernel.testBoxes(floatBounds, nearX, nearY, nearZ, farX, farY, farZ,
+                        ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+            else
+                testLanes(floatBounds, nearX, nearY, nearZ, farX, farY, farZ,
+                        ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+        } else if (kernel != null)
+            kernel.testBoxes(bounds, nearX, nearY, nearZ, farX, farY, farZ,
+                    ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+        else
+            testLanes(bounds, nearX, nearY, nearZ, farX, farY, farZ, ox, oy, oz, invDx, invDy, invDz, tMax, entries);
+    }
+
+    /**
+     * The scalar lane loop of {@link #testNode(int, Ray, double, double, double, double, double[])}.
+     * The loop has a constant trip count of four, so C2 unrolls it into straight-line scalar code.
+     *
+     * @param bounds  the bounds, six groups of four lanes per node
+     * @param nearX   the index of the near X planes of the lanes
+     * @param nearY   the index of the near Y planes of the lanes
+     * @param nearZ   the index of the near Z planes of the lanes
+     * @param farX    the index of the far X planes of the lanes
+     * @param farY    the index of the far Y planes of the lanes
+     * @param farZ    the index of the far Z planes of the lanes
+     * @param ox      the X coordinate of the ray head
+     * @param oy      the Y coordinate of the ray head
+     * @param oz      the Z coordinate of the ray head
+     * @param invDx   the inverse of the X component of the ray direction
+     * @param invDy   the inverse of the Y component of the ray direction
+     * @param invDz   the inverse of the Z component of the ray direction
+     * @param tMax    the distance beyond which the boxes are considered missed
+     * @param entries output - the entry distance of each box, or positive infinity if it is missed
+     */
+    static void testLanes(double[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                          double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                          double tMax, double[] entries) {
+        for (int i = 0; i < WIDTH; ++i) {
+            // Plain comparisons ignore the NaN of a zero direction component on a slab plane
+            double tNear = 0, tFar = tMax;
+            double t = (bounds[nearX + i] - ox) * invDx;
+            if (t > tNear) tNear = t;
+            t = (bounds[nearY + i] - oy) * invDy;
+            if (t > tNear) tNear = t;
+            t = (bounds[nearZ + i] - oz) * invDz;
+            if (t > tNear) tNear = t;
+            t = (bounds[farX + i] - ox) * invDx;
+            if (t < tFar) tFar = t;
+            t = (bounds[farY + i] - oy) * invDy;
+            if (t < tFar) tFar = t;
+            t = (bounds[farZ + i] - oz) * invDz;
+            if (t < tFar) tFar = t;
+            entries[i] = tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The scalar lane loop over bounds stored in single precision. The bounds are widened to double,
+     * so the distances are calculated exactly as in double precision.
+     *
+     * @see #testLanes(double[], int, int, int, int, int, int, double, double, double, double, double, double,
+     * double, double[])
+     */
+    static void testLanes(float[] bounds, int nearX, int nearY, int nearZ, int farX, int farY, int farZ,
+                          double ox, double oy, double oz, double invDx, double invDy, double invDz,
+                          double tMax, double[] entries) {
+        for (int i = 0; i < WIDTH; ++i) {
+            double tNear = 0, tFar = tMax;
+            double t = (bounds[nearX + i] - ox) * invDx;
+            if (t > tNear) tNear = t;
+            t = (bounds[nearY + i] - oy) * invDy;
+            if (t > tNear) tNear = t;
+            t = (bounds[nearZ + i] - oz) * invDz;
+            if (t > tNear) tNear = t;
+            t = (bounds[farX + i] - ox) * invDx;
+            if (t < tFar) tFar = t;
+            t = (bounds[farY + i] - oy) * invDy;
+            if (t < tFar) tFar = t;
+            t = (bounds[farZ + i] - oz) * invDz;
+            if (t < tFar) tFar = t;
+            entries[i] = tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        double ox = ray.getHeadX(), oy = ray.getHeadY(), oz = ray.getHeadZ();
+        double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+
+        List<Intersection> intersections = null;
+        // Non-negative stack codes are inner nodes, negative codes (-slot - 1) are leaves
+        TraversalStack scratch = TraversalStack.get();
+        double[] laneT = scratch.laneT, laneU = scratch.laneU, laneV = scratch.laneV;
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp++] = 0;
+            while (sp > base) {
+                int code = scratch.nodes[--sp];
+                if (code >= 0) {
+                    double[] entries = scratch.lanes;
+                    testNode(code, ray, ox, oy, oz, Double.POSITIVE_INFINITY, entries);
+                    for (int i = 0; i < WIDTH; ++i) {
+                        if (entries[i] == Double.POSITIVE_INFINITY) continue;
+                        int slot = code * WIDTH + i;
+                        scratch.nodes[sp++] = counts[slot] < 0 ? targets[slot] : -slot - 1;
+                    }
+                    continue;
+                }
+
+                int slot = -code - 1;
+                for (int k = blockStarts[slot]; k < blockStarts[slot] + blockCounts[slot]; ++k) {
+                    blocks.intersect(k, ox, oy, oz, dx, dy, dz, laneT, laneU, laneV);
+                    for (int lane = 0; lane < TriangleBlocks.WIDTH; ++lane) {
+                        if (laneT[lane] == Double.POSITIVE_INFINITY) continue;
+                        if (intersections == null) intersections = new LinkedList<>();
+                        intersections.add(new Intersection(blocks.get(k, lane), ray, laneT[lane]));
+                    }
+                }
+                for (int p = targets[slot]; p < targets[slot] + counts[slot]; ++p) {
+                    List<Intersection> primIntersections = primitives[p].calculateIntersections(ray);
+                    if (primIntersections != null) {
+                        if (intersections == null) intersections = new LinkedList<>();
+                        intersections.addAll(primIntersections);
+                    }
+                }
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return intersections;
+    }
+
+    /**
+     * Finds the closest intersection, visiting the children nearest first.
+     * Both inner children and leaves are pushed with their entry distances, and are skipped
+     * when popped if that distance is beyond the closest intersection found so far.
+     *
+     * @param ray the ray
+     * @param hit the closest hit so far, updated if a closer one is found
+     * @return true if a closer hit was recorded
+     */
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        double ox = ray.getHeadX(), oy = ray.getHeadY(), oz = ray.getHeadZ();
+        double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+
+        boolean found = false;
+        // Non-negative stack codes are inner nodes, negative codes (-slot - 1) are leaves
+        TraversalStack scratch = TraversalStack.get();
+        double[] laneT = scratch.laneT, laneU = scratch.laneU, laneV = scratch.laneV;
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp] = 0;
+            scratch.entries[sp++] = 0;
+            while (sp > base) {
+                --sp;
+                if (scratch.entries[sp] >= hit.t) continue;
+                int code = scratch.nodes[sp];
+
+                if (code < 0) {
+                    int slot = -code - 1;
+                    for (int k = blockStarts[slot]; k < blockStarts[slot] + blockCounts[slot]; ++k) {
+                        blocks.intersect(k, ox, oy, oz, dx, dy, dz, laneT, laneU, laneV);
+                        for (int lane = 0; lane < TriangleBlocks.WIDTH; ++lane) {
+                            if (laneT[lane] < hit.t && hit.record(laneT[lane], blocks.get(k, lane))) {
+                                hit.u = laneU[lane];
+                                hit.v = laneV[lane];
+                                found = true;
+                            }
+                        }
+                    }
+                    for (int p = targets[slot]; p < targets[slot] + counts[slot]; ++p) {
+                        if (primitives[p].intersect(ray, hit)) found = true;
+                    }
+                    continue;
+                }
+
+                // Push the children farthest first, so the nearest one is popped next
+                double[] entries = scratch.lanes;
+                testNode(code, ray, ox, oy, oz, hit.t, entries);
+                int[] stack = scratch.nodes;
+                double[] stackEntries = scratch.entries;
+                int first = sp;
+                for (int i = 0; i < WIDTH; ++i) {
+                    double entry = entries[i];
+                    if (entry >= hit.t) continue;
+                    int slot = code * WIDTH + i;
+                    int child = counts[slot] < 0 ? targets[slot] : -slot - 1;
+                    int j = sp++;
+                    for (; j > first && stackEntries[j - 1] < entry; --j) {
+                        stack[j] = stack[j - 1];
+                        stackEntries[j] = stackEntries[j - 1];
+                    }
+                    stack[j] = child;
+                    stackEntries[j] = entry;
+                }
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque primitive closer than the given distance.
+     * Children entered beyond the distance are skipped, and the traversal stops at the first
+     * opaque blocker.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param transparent consumer of the intersections with transparent geometries, or null
+     * @return true if an opaque geometry is intersected closer than the distance
+     */
+    @Override
+    protected boolean isOccludedHelper(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        double ox = ray.getHeadX(), oy = ray.getHeadY(), oz = ray.getHeadZ();
+        double dx = ray.getDirX(), dy = ray.getDirY(), dz = ray.getDirZ();
+
+        // Non-negative stack codes are inner nodes, negative codes (-slot - 1) are leaves
+        TraversalStack scratch = TraversalStack.get();
+        double[] laneT = scratch.laneT, laneU = scratch.laneU, laneV = scratch.laneV;
+        int base = scratch.push(stackSize);
+        try {
+            int sp = base;
+            scratch.nodes[sp++] = 0;
+            while (sp > base) {
+                int code = scratch.nodes[--sp];
+                if (code >= 0) {
+                    double[] entries = scratch.lanes;
+                    testNode(code, ray, ox, oy, oz, maxDistance, entries);
+                    for (int i = 0; i < WIDTH; ++i) {
+                        if (entries[i] >= maxDistance) continue;
+                        int slot = code * WIDTH + i;
+                        scratch.nodes[sp++] = counts[slot] < 0 ? targets[slot] : -slot - 1;
+                    }
+                    continue;
+                }
+
+                int slot = -code - 1;
+                for (int k = blockStarts[slot]; k < blockStarts[slot] + blockCounts[slot]; ++k) {
+                    blocks.intersect(k, ox, oy, oz, dx, dy, dz, laneT, laneU, laneV);
+                    for (int lane = 0; lane < TriangleBlocks.WIDTH; ++lane) {
+                        if (laneT[lane] >= maxDistance) continue;
+                        // A transparent triangle passes its intersection on through the regular path
+                        Geometry triangle = blocks.get(k, lane);
+                        if (triangle.getMaterial().isOpaque()
+                                || triangle.isOccluded(ray, maxDistance, transparent)) return true;
+                    }
+                }
+                for (int p = targets[slot]; p < targets[slot] + counts[slot]; ++p)
+                    if (primitives[p].isOccluded(ray, maxDistance, transparent)) return true;
+            }
+        } finally {
+            scratch.pop(base);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,160 @@
+package primitives;
+
+/**
+ * Mutable 3-component scratch vector for the inner loops of the intersection and shading kernels.
+ * <p>
+ * {@link Point}, {@link Vector} and {@link Double3} are immutable, so every intermediate result
+ * of a calculation is a new object (two, for a point or a vector). A scratch vector is updated in place,
+ * and a local one which does not escape the method is usually not allocated at all by the JIT compiler.
+ * Only the final result is turned into an immutable {@link Point} or {@link Vector}.
+ * </p>
+ * Unlike {@link Vector}, a scratch vector may be zero.
+ */
+public final class MutableVector {
+    /** The X component */
+    public double x;
+    /** The Y component */
+    public double y;
+    /** The Z component */
+    public double z;
+
+    /**
+     * Constructs a zero scratch vector.
+     */
+    public MutableVector() {
+    }
+
+    /**
+     * Constructs a scratch vector with the coordinates of a point or the components of a vector.
+     *
+     * @param p the point or vector
+     */
+    public MutableVector(Point p) {
+        set(p);
+    }
+
+    /**
+     * Sets the components.
+     *
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @return this vector
+     */
+    public MutableVector set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Sets the components to the coordinates of a point or the components of a vector.
+     *
+     * @param p the point or vector
+     * @return this vector
+     */
+    public MutableVector set(Point p) {
+        return set(p.getX(), p.getY(), p.getZ());
+    }
+
+    /**
+     * Sets this vector to the difference of two points.
+     *
+     * @param a the end point
+     * @param b the start point
+     * @return this vector, a - b
+     */
+    public MutableVector setDifference(Point a, Point b) {
+        return set(a.getX() - b.getX(), a.getY() - b.getY(), a.getZ() - b.getZ());
+    }
+
+    /**
+     * Sets this vector to the cross product of two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector
+     * @return this vector, a x b
+     */
+    public MutableVector setCross(MutableVector a, MutableVector b) {
+        return set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+    }
+
+    /**
+     * Adds a scaled vector to this one.
+     *
+     * @param v the vector
+     * @param t the scale factor
+     * @return this vector, this + v * t
+     */
+    public MutableVector addScaled(Point v, double t) {
+        x += v.getX() * t;
+        y += v.getY() * t;
+        z += v.getZ() * t;
+        return this;
+    }
+
+    /**
+     * Calculates the dot product with another scratch vector.
+     *
+     * @param v the other vector
+     * @return the dot product
+     */
+    public double dotProduct(MutableVector v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    /**
+     * Calculates the dot product with a vector.
+     *
+     * @param v the vector
+     * @return the dot product
+     */
+    public double dotProduct(Vector v) {
+        return x * v.getX() + y * v.getY() + z * v.getZ();
+    }
+
+    /**
+     * Calculates the squared length.
+     *
+     * @return the squared length
+     */
+    public double lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Normalizes this vector in place.
+     *
+     * @return this vector
+     * @throws IllegalArgumentException if the vector is zero
+     */
+    public MutableVector normalize() {
+        double length = Math.sqrt(lengthSquared());
+        if (length == 0) throw new IllegalArgumentException("Zero vector cannot be normalized");
+        double scale = 1.0 / length;
+        x *= scale;
+        y *= scale;
+        z *= scale;
+        return this;
+    }
+
+    /**
+     * Creates an immutable vector with the components of this one.
+     *
+     * @return the vector
+     * @throws IllegalArgumentException if the vector is zero
+     */
+    public Vector toVector() {
+        return new Vector(x, y, z);
+    }
+
+    /**
+     * Creates an immutable point with the coordinates of this vector.
+     *
+     * @return the point
+     */
+    public Point toPoint() {
+        return new Point(x, y, z);
+    }
+}
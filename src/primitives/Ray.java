@@ -12,14 +12,32 @@ import geometries.Intersectable.Intersection;
 public class Ray {
     private static final double DELTA = 0.1;
     /**
-     * The starting point of the ray.
+     * The starting point of the ray, or null until it is first needed by a {@link ScratchRay}.
      */
-    private final Point head;
+    private Point head;
 
     /**
-     * The normalized direction vector of the ray.
+     * The normalized direction vector of the ray, or null until it is first needed by a {@link ScratchRay}.
      */
-    private final Vector direction;
+    private Vector direction;
+
+    /**
+     * Coordinates of the head and components of the direction, for the intersection kernels,
+     * which read them without going through the point and the vector.
+     */
+    private double headX, headY, headZ, dirX, dirY, dirZ;
+
+    /**
+     * Inverse components of the direction, cached for the slab tests of bounding boxes.
+     * A zero component gives an infinite inverse.
+     */
+    private double invDirX, invDirY, invDirZ;
+
+    /**
+     * Sign flags of the direction components: 1 if negative, 0 otherwise.
+     * They select the near and far planes of a box slab without comparing.
+     */
+    private int signX, signY, signZ;
 
     /**
      * Constructs a ray with a starting point and a direction vector.
@@ -31,14 +49,65 @@ public class Ray {
     public Ray(Point p, Vector v) {
         head = p;
         direction = v.normalize();
+        headX = p.getX();
+        headY = p.getY();
+        headZ = p.getZ();
+        dirX = direction.getX();
+        dirY = direction.getY();
+        dirZ = direction.getZ();
+        cacheInverse();
     }
 
-    public Ray(Point head,Vector direction,Vector normal) {
-        double dot = alignZero(direction.dotProduct(normal));
-        double scaleFactor = (dot > 0 ? DELTA : -DELTA);
-        this.head = head.add(normal.scale(scaleFactor));
-        this.direction = direction.normalize();
+    /**
+     * Constructs a ray to be set later, for {@link ScratchRay}.
+     */
+    Ray() {
+    }
+
+    /**
+     * Moves the ray in place, for {@link ScratchRay}.
+     * The head and the direction objects are created again only if they are asked for.
+     *
+     * @param ox the X coordinate of the head
+     * @param oy the Y coordinate of the head
+     * @param oz the Z coordinate of the head
+     * @param dx the X component of the direction, normalized
+     * @param dy the Y component of the direction, normalized
+     * @param dz the Z component of the direction, normalized
+     */
+    void set(double ox, double oy, double oz, double dx, double dy, double dz) {
+        head = null;
+        direction = null;
+        headX = ox;
+        headY = oy;
+        headZ = oz;
+        dirX = dx;
+        dirY = dy;
+        dirZ = dz;
+        cacheInverse();
+    }
+
+    /**
+     * Caches the inverse direction and the sign flags.
+     */
+    private void cacheInverse() {
+        invDirX = 1.0 / dirX;
+        invDirY = 1.0 / dirY;
+        invDirZ = 1.0 / dirZ;
+        signX = invDirX < 0 ? 1 : 0;
+        signY = invDirY < 0 ? 1 : 0;
+        signZ = invDirZ < 0 ? 1 : 0;
+    }
 
+    /**
+     * Constructs a ray starting at a point moved slightly off a surface, to the side of the direction.
+     *
+     * @param head      the point on the surface
+     * @param direction the direction vector of the ray
+     * @param normal    the normal of the surface at the point
+     */
+    public Ray(Point head, Vector direction, Vector normal) {
+        this(head.add(normal.scale(alignZero(direction.dotProduct(normal)) > 0 ? DELTA : -DELTA)), direction);
     }
 
     /**
@@ -47,6 +116,7 @@ public class Ray {
      * @return the starting point
      */
     public Point getHead() {
+        if (head == null) head = new Point(headX, headY, headZ);
         return head;
     }
 
@@ -56,9 +126,118 @@ public class Ray {
      * @return the direction vector
      */
     public Vector getDirection() {
+        if (direction == null) direction = new Vector(dirX, dirY, dirZ);
         return direction;
     }
 
+    /**
+     * Returns the X coordinate of the head.
+     *
+     * @return the X coordinate of the starting point
+     */
+    public double getHeadX() {
+        return headX;
+    }
+
+    /**
+     * Returns the Y coordinate of the head.
+     *
+     * @return the Y coordinate of the starting point
+     */
+    public double getHeadY() {
+        return headY;
+    }
+
+    /**
+     * Returns the Z coordinate of the head.
+     *
+     * @return the Z coordinate of the starting point
+     */
+    public double getHeadZ() {
+        return headZ;
+    }
+
+    /**
+     * Returns the X component of the direction.
+     *
+     * @return the X component of the normalized direction
+     */
+    public double getDirX() {
+        return dirX;
+    }
+
+    /**
+     * Returns the Y component of the direction.
+     *
+     * @return the Y component of the normalized direction
+     */
+    public double getDirY() {
+        return dirY;
+    }
+
+    /**
+     * Returns the Z component of the direction.
+     *
+     * @return the Z component of the normalized direction
+     */
+    public double getDirZ() {
+        return dirZ;
+    }
+
+    /**
+     * Returns the inverse of the X component of the direction.
+     *
+     * @return 1 / direction X, infinite if the component is zero
+     */
+    public double getInvDirX() {
+        return invDirX;
+    }
+
+    /**
+     * Returns the inverse of the Y component of the direction.
+     *
+     * @return 1 / direction Y, infinite if the component is zero
+     */
+    public double getInvDirY() {
+        return invDirY;
+    }
+
+    /**
+     * Returns the inverse of the Z component of the direction.
+     *
+     * @return 1 / direction Z, infinite if the component is zero
+     */
+    public double getInvDirZ() {
+        return invDirZ;
+    }
+
+    /**
+     * Returns the sign flag of the X component of the direction.
+     *
+     * @return 1 if the component is negative, 0 otherwise
+     */
+    public int getSignX() {
+        return signX;
+    }
+
+    /**
+     * Returns the sign flag of the Y component of the direction.
+     *
+     * @return 1 if the component is negative, 0 otherwise
+     */
+    public int getSignY() {
+        return signY;
+    }
+
+    /**
+     * Returns the sign flag of the Z component of the direction.
+     *
+     * @return 1 if the component is negative, 0 otherwise
+     */
+    public int getSignZ() {
+        return signZ;
+    }
+
     /**
      * Calculates a point on the ray at a given distance from the starting point.
      *
@@ -67,9 +246,9 @@ public class Ray {
      */
     public Point getPoint(double t) {
         if (isZero(t)) {
-            return head;
+            return getHead();
         }
-        return head.add(direction.scale(t));
+        return getHead().add(getDirection().scale(t));
     }
 
     /**
@@ -82,7 +261,7 @@ public class Ray {
      */
     public Point findClosestPoint(List<Point> points) {
         return points == null ? null
-                : findClosestIntersection(points.stream().map(p -> new Intersection(null, p)).toList()).point;
+                : findClosestIntersection(points.stream().map(p -> new Intersection(null, p)).toList()).getPoint();
     }
 
     /**
@@ -99,8 +278,7 @@ public class Ray {
         Intersection closest = null;
         double minDistance = Double.POSITIVE_INFINITY;
         for (Intersection intersection : intersections) {
-            Point p = intersection.point;
-            double distance = p.distanceSquared(head);
+            double distance = intersection.distance(this);
             if (distance < minDistance) {
                 closest = intersection;
                 minDistance = distance;
@@ -120,8 +298,8 @@ public class Ray {
     public boolean equals(Object o) {
         if (this == o) return true;
         return (o instanceof Ray other)
-                && this.head.equals(other.head)
-                && this.direction.equals(other.direction);
+                && this.getHead().equals(other.getHead())
+                && this.getDirection().equals(other.getDirection());
     }
 
     /**
@@ -132,8 +310,8 @@ public class Ray {
     @Override
     public String toString() {
         return "Ray{" +
-                "head=" + head +
-                ", direction=" + direction +
+                "head=" + getHead() +
+                ", direction=" + getDirection() +
                 '}';
     }
 }
@@ -0,0 +1,21 @@
+package primitives;
+
+/**
+ * Ray which is moved in place, for the rays an intersection kernel derives from the ray it was given
+ * (e.g. the ray moved into the object space of an instance).
+ * <p>
+ * A new {@link Ray} per derived ray is a point, a vector and the ray itself for every visit. A scratch ray
+ * is set through {@link Transform#inverseRay(Ray, ScratchRay)} instead, and its head and direction objects
+ * are created only if something asks for them; the intersection kernels read the coordinates directly.
+ * </p>
+ * A scratch ray is in use only while its kernel runs, so nothing may keep it, or an intersection
+ * found along it, after that.
+ */
+public final class ScratchRay extends Ray {
+    /**
+     * Constructs a scratch ray, to be set before use.
+     */
+    public ScratchRay() {
+        super();
+    }
+}
@@ -0,0 +1,286 @@
+package primitives;
+
+/**
+ * Immutable affine transformation of 3D space, together with its inverse.
+ * <p>
+ * The transformation is kept as a 3x4 matrix (a linear 3x3 part and a translation column),
+ * stored row by row. The inverse is calculated once on construction, so points can be
+ * moved between object space and world space in both directions without solving anything per ray.
+ * </p>
+ */
+public class Transform {
+    /**
+     * The identity transformation.
+     */
+    public static final Transform IDENTITY = new Transform(new double[]{
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0});
+
+    /**
+     * The matrix of the transformation, row by row.
+     */
+    private final double[] m;
+
+    /**
+     * The matrix of the inverse transformation, row by row.
+     */
+    private final double[] inv;
+
+    /**
+     * Constructs a transformation from its 3x4 matrix.
+     *
+     * @param m the 12 matrix elements, row by row
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    private Transform(double[] m) {
+        this.m = m;
+        this.inv = invert(m);
+    }
+
+    /**
+     * Constructs a transformation from matrices already inverted.
+     *
+     * @param m   the matrix
+     * @param inv the inverse matrix
+     */
+    private Transform(double[] m, double[] inv) {
+        this.m = m;
+        this.inv = inv;
+    }
+
+    /**
+     * Creates a translation.
+     *
+     * @param offset the translation vector
+     * @return the transformation
+     */
+    public static Transform translation(Vector offset) {
+        return new Transform(new double[]{
+                1, 0, 0, offset.getX(),
+                0, 1, 0, offset.getY(),
+                0, 0, 1, offset.getZ()});
+    }
+
+    /**
+     * Creates a uniform scaling around the origin.
+     *
+     * @param factor the scale factor
+     * @return the transformation
+     * @throws IllegalArgumentException if the factor is zero
+     */
+    public static Transform scaling(double factor) {
+        return scaling(factor, factor, factor);
+    }
+
+    /**
+     * Creates a scaling around the origin with a factor per axis.
+     *
+     * @param sx the X scale factor
+     * @param sy the Y scale factor
+     * @param sz the Z scale factor
+     * @return the transformation
+     * @throws IllegalArgumentException if any factor is zero
+     */
+    public static Transform scaling(double sx, double sy, double sz) {
+        return new Transform(new double[]{
+                sx, 0, 0, 0,
+                0, sy, 0, 0,
+                0, 0, sz, 0});
+    }
+
+    /**
+     * Creates a rotation around an axis through the origin.
+     *
+     * @param axis  the rotation axis
+     * @param angle the rotation angle in degrees, counterclockwise when looking against the axis
+     * @return the transformation
+     */
+    public static Transform rotation(Vector axis, double angle) {
+        Vector u = axis.normalize();
+        double x = u.getX(), y = u.getY(), z = u.getZ();
+        double rad = Math.toRadians(angle);
+        double c = Math.cos(rad), s = Math.sin(rad), t = 1 - c;
+        double[] r = {
+                t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0,
+                t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0,
+                t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0};
+        // The inverse of a rotation is its transpose
+        double[] rInv = {
+                r[0], r[4], r[8], 0,
+                r[1], r[5], r[9], 0,
+                r[2], r[6], r[10], 0};
+        return new Transform(r, rInv);
+    }
+
+    /**
+     * Composes this transformation with another one applied after it.
+     *
+     * @param next the transformation applied after this one
+     * @return the composed transformation
+     */
+    public Transform then(Transform next) {
+        return new Transform(multiply(next.m, m), multiply(inv, next.inv));
+    }
+
+    /**
+     * Returns the inverse transformation.
+     *
+     * @return the inverse transformation
+     */
+    public Transform inverse() {
+        return new Transform(inv, m);
+    }
+
+    /**
+     * Transforms a point.
+     *
+     * @param p the point
+     * @return the transformed point
+     */
+    public Point transformPoint(Point p) {
+        return applyPoint(m, p);
+    }
+
+    /**
+     * Transforms a direction vector (the translation does not apply).
+     *
+     * @param v the vector
+     * @return the transformed vector, not normalized
+     */
+    public Vector transformVector(Vector v) {
+        return applyVector(m, v);
+    }
+
+    /**
+     * Transforms a surface normal, using the inverse transpose of the linear part
+     * so the normal stays perpendicular to the transformed surface.
+     *
+     * @param n the normal
+     * @return the transformed normal, normalized
+     */
+    public Vector transformNormal(Vector n) {
+        double x = n.getX(), y = n.getY(), z = n.getZ();
+        return new Vector(
+                inv[0] * x + inv[4] * y + inv[8] * z,
+                inv[1] * x + inv[5] * y + inv[9] * z,
+                inv[2] * x + inv[6] * y + inv[10] * z).normalize();
+    }
+
+    /**
+     * Transforms a point by the inverse transformation.
+     *
+     * @param p the point
+     * @return the point moved back
+     */
+    public Point inversePoint(Point p) {
+        return applyPoint(inv, p);
+    }
+
+    /**
+     * Transforms a direction vector by the inverse transformation.
+     *
+     * @param v the vector
+     * @return the vector moved back, not normalized
+     */
+    public Vector inverseVector(Vector v) {
+        return applyVector(inv, v);
+    }
+
+    /**
+     * Moves a ray by the inverse transformation into a scratch ray, without creating any objects.
+     * The direction is normalized, so a distance along the given ray is the distance along
+     * the moved ray divided by the returned scale.
+     *
+     * @param ray    the ray
+     * @param target the scratch ray to set to the moved ray
+     * @return the length of the moved direction before normalizing - the factor from distances
+     * along the given ray to distances along the moved one
+     */
+    public double inverseRay(Ray ray, ScratchRay target) {
+        double x = ray.getHeadX(), y = ray.getHeadY(), z = ray.getHeadZ();
+        double ox = inv[0] * x + inv[1] * y + inv[2] * z + inv[3];
+        double oy = inv[4] * x + inv[5] * y + inv[6] * z + inv[7];
+        double oz = inv[8] * x + inv[9] * y + inv[10] * z + inv[11];
+        x = ray.getDirX();
+        y = ray.getDirY();
+        z = ray.getDirZ();
+        double dx = inv[0] * x + inv[1] * y + inv[2] * z;
+        double dy = inv[4] * x + inv[5] * y + inv[6] * z;
+        double dz = inv[8] * x + inv[9] * y + inv[10] * z;
+        double scale = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        // The same arithmetic as Vector.normalize()
+        double factor = 1.0 / scale;
+        target.set(ox, oy, oz, dx * factor, dy * factor, dz * factor);
+        return scale;
+    }
+
+    /**
+     * Applies a matrix to a point.
+     */
+    private static Point applyPoint(double[] a, Point p) {
+        double x = p.getX(), y = p.getY(), z = p.getZ();
+        return new Point(
+                a[0] * x + a[1] * y + a[2] * z + a[3],
+                a[4] * x + a[5] * y + a[6] * z + a[7],
+                a[8] * x + a[9] * y + a[10] * z + a[11]);
+    }
+
+    /**
+     * Applies the linear part of a matrix to a vector.
+     */
+    private static Vector applyVector(double[] a, Vector v) {
+        double x = v.getX(), y = v.getY(), z = v.getZ();
+        return new Vector(
+                a[0] * x + a[1] * y + a[2] * z,
+                a[4] * x + a[5] * y + a[6] * z,
+                a[8] * x + a[9] * y + a[10] * z);
+    }
+
+    /**
+     * Multiplies two affine 3x4 matrices (with an implied last row of 0, 0, 0, 1).
+     *
+     * @return the product a * b, which applies b first
+     */
+    private static double[] multiply(double[] a, double[] b) {
+        double[] r = new double[12];
+        for (int row = 0; row < 3; ++row) {
+            int o = row * 4;
+            for (int col = 0; col < 4; ++col)
+                r[o + col] = a[o] * b[col] + a[o + 1] * b[4 + col] + a[o + 2] * b[8 + col];
+            r[o + 3] += a[o + 3];
+        }
+        return r;
+    }
+
+    /**
+     * Inverts an affine 3x4 matrix.
+     *
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    private static double[] invert(double[] a) {
+        double c00 = a[5] * a[10] - a[6] * a[9];
+        double c01 = a[6] * a[8] - a[4] * a[10];
+        double c02 = a[4] * a[9] - a[5] * a[8];
+        double det = a[0] * c00 + a[1] * c01 + a[2] * c02;
+        if (Util.isZero(det)) throw new IllegalArgumentException("Transformation is singular");
+        double d = 1 / det;
+
+        double[] r = new double[12];
+        r[0] = c00 * d;
+        r[1] = (a[2] * a[9] - a[1] * a[10]) * d;
+        r[2] = (a[1] * a[6] - a[2] * a[5]) * d;
+        r[4] = c01 * d;
+        r[5] = (a[0] * a[10] - a[2] * a[8]) * d;
+        r[6] = (a[2] * a[4] - a[0] * a[6]) * d;
+        r[8] = c02 * d;
+        r[9] = (a[1] * a[8] - a[0] * a[9]) * d;
+        r[10] = (a[0] * a[5] - a[1] * a[4]) * d;
+        // The inverse translation moves the original translation back
+        for (int row = 0; row < 3; ++row) {
+            int o = row * 4;
+            r[o + 3] = -(r[o] * a[3] + r[o + 1] * a[7] + r[o + 2] * a[11]);
+        }
+        return r;
+    }
+}
@@ -1,12 +1,26 @@
 package renderer;
 
+import geometries.BVHBuilder;
+import geometries.BVHLayout;
+import geometries.MedianBuilder;
+import geometries.SAHBuilder;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 import scene.Scene;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
 import static primitives.Util.alignZero;
@@ -38,6 +52,21 @@ public class Camera implements Cloneable {
     private static final int SPARE_THREADS = 2; // Spare threads if trying to use all the cores
     private double printInterval = 0; // printing progress percentage interval (0 – no printing)
     private PixelManager pixelManager; // pixel manager object
+    private long bvhBuildTime = -1; // duration of the last BVH build or refit in ms (-1 - no BVH built)
+    private int packetSize = 0; // side of the square packets of primary rays (0 - single rays)
+    /** Maximal side of a packet of primary rays */
+    private static final int MAX_PACKET_SIZE = 8;
+    private int tileSize = 0; // side of the square tiles of multithreaded rendering (0 - no tiles)
+    private boolean virtualThreads = false; // render by a virtual thread per tile or per row
+    private PixelOrder pixelOrder = PixelOrder.ROW_MAJOR; // order of the tiles and of the pixels in a tile
+    private int[] tileCellOrder = null; // order of the pixels (or packets) in a tile, null for row-major
+    /** Side of the blocks of pixels of the first pass of progressive rendering */
+    private static final int PROGRESSIVE_BLOCK = 16;
+    /**
+     * Permits of running virtual thread render tasks, shared by all the cameras of the process,
+     * so concurrent renders together never trace on more threads than there are cores
+     */
+    static final Semaphore RENDER_PERMITS = new Semaphore(Runtime.getRuntime().availableProcessors());
 
     /**
      * Returns a new Builder instance for constructing a Camera object.
@@ -110,6 +139,14 @@ public class Camera implements Cloneable {
         return height;
     }
 
+    /**
+     * @return the duration in milliseconds of the last BVH build, rebuild or refit made by the builder
+     * of the camera, or -1 if it built no BVH
+     */
+    public long getBVHBuildTime() {
+        return bvhBuildTime;
+    }
+
     /**
      * Constructs a ray through a specific pixel in the view plane.
      *
@@ -143,6 +180,12 @@ public class Camera implements Cloneable {
      * @return the Camera instance
      */
     public Camera renderImageNoThreads() {
+        if (packetSize > 0) {
+            for (int i = 0; i < nY; i += packetSize)
+                for (int j = 0; j < nX; j += packetSize)
+                    castPacket(j, i, Math.min(packetSize, nX - j), Math.min(packetSize, nY - i));
+            return this;
+        }
         for (int i = 0; i < nY; i++) {
             for (int j = 0; j < nX; j++) {
                 castRay(j, i);
@@ -158,12 +201,128 @@ public class Camera implements Cloneable {
      */
     public Camera renderImage() {
         pixelManager = new PixelManager(nY, nX, printInterval);
-        return switch (threadsCount) {
-            case 0 -> renderImageNoThreads();
-            case -1 -> renderImageStream();
-            default -> renderImageRawThreads();
-        };
+        try {
+            if (virtualThreads) return renderImageVirtualThreads();
+            if (tileSize > 0 && threadsCount != 0) return renderImageTiles();
+            return switch (threadsCount) {
+                case 0 -> renderImageNoThreads();
+                case -1 -> renderImageStream();
+                default -> renderImageRawThreads();
+            };
+        } finally {
+            pixelManager.finish();
+        }
     }
+
+    /**
+     * Renders the image progressively: the first pass traces one ray per 16x16 block of pixels
+     * and fills the whole block with its color, and every following pass halves the blocks,
+     * tracing only the pixels not traced yet, until the last pass fills the single pixels.
+     * The callback is invoked after each pass, e.g. to write a preview image by {@link #writeToImage(String)},
+     * so the framing can be judged after the first pass, which costs 1/256 of the rays.
+     * Every pixel is traced once, so the final image is the same as of {@link #renderImage()}.
+     * The rows of blocks of each pass are traced with the same multithreading as {@link #renderImage()}
+     * (the threads count, or virtual threads bounded by the shared permits); packets are not used.
+     *
+     * @param onPass the callback invoked after each pass with the block side of the pass (16, 8, 4, 2, 1),
+     *               or null
+     * @return the Camera instance
+     */
+    public Camera renderImageProgressive(IntConsumer onPass) {
+        pixelManager = new PixelManager(nY, nX, printInterval);
+        try {
+            for (int size = PROGRESSIVE_BLOCK; size >= 1; size /= 2) {
+                int blockSize = size;
+                runTasks((nY + size - 1) / size, row -> renderPassRow(row * blockSize, blockSize));
+                if (onPass != null) onPass.accept(size);
+            }
+        } finally {
+            pixelManager.finish();
+        }
+        return this;
+    }
+
+    /**
+     * Renders a row of blocks of a progressive pass - traces the top left pixel of each block
+     * which was not traced by the previous passes, and fills the block with its color.
+     *
+     * @param i    the row index of the top pixels of the blocks
+     * @param size the side of the blocks
+     */
+    private void renderPassRow(int i, int size) {
+        // The pixels on the even rows and even columns of blocks were traced by the previous pass
+        boolean traced = size < PROGRESSIVE_BLOCK && i / size % 2 == 0;
+        for (int j = 0; j < nX; j += size) {
+            if (traced && j / size % 2 == 0) continue;
+            primitives.Color color = rayTracer.traceRay(constructRay(nX, nY, j, i));
+            for (int y = i; y < Math.min(i + size, nY); ++y)
+                for (int x = j; x < Math.min(j + size, nX); ++x)
+                    imageWriter.writePixel(x, y, color);
+            pixelManager.pixelDone();
+        }
+    }
+
+    /**
+     * Runs the tasks of a render with the multithreading of the camera: sequentially, by a parallel
+     * stream (threads count -1), by the threads count of threads claiming the tasks from a shared counter,
+     * or by a virtual thread per task bounded by the shared permits.
+     *
+     * @param count the amount of tasks
+     * @param task  the task, accepting the task index
+     */
+    private void runTasks(int count, IntConsumer task) {
+        if (virtualThreads) runVirtualThreads(count, task);
+        else if (threadsCount == 0) for (int k = 0; k < count; ++k) task.accept(k);
+        else if (threadsCount == -1) IntStream.range(0, count).parallel().forEach(task);
+        else {
+            AtomicInteger next = new AtomicInteger();
+            var threads = new LinkedList<Thread>();
+            for (int t = 0; t < threadsCount; ++t)
+                threads.add(new Thread(() -> {
+                    int k;
+                    while ((k = next.getAndIncrement()) < count) task.accept(k);
+                }));
+            for (var thread : threads) thread.start();
+            try {
+                for (var thread : threads) thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs tasks by a virtual thread per task. Every task holds one of the permits shared by all
+     * the renders of the process while it runs.
+     *
+     * @param count the amount of tasks
+     * @param task  the task, accepting the task index
+     * @throws IllegalStateException if a task failed
+     */
+    private static void runVirtualThreads(int count, IntConsumer task) {
+        List<Future<?>> futures = new ArrayList<>(count);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int k = 0; k < count; ++k) {
+                int index = k;
+                futures.add(executor.submit(() -> {
+                    RENDER_PERMITS.acquireUninterruptibly();
+                    try {
+                        task.accept(index);
+                    } finally {
+                        RENDER_PERMITS.release();
+                    }
+                }));
+            }
+        }
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rendering failed", e.getCause());
+        }
+    }
+
     /**
      * Prints a grid on the image with a specified interval and color.
      *
@@ -182,6 +341,13 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * @return the image writer holding the rendered image
+     */
+    ImageWriter getImageWriter() {
+        return imageWriter;
+    }
+
     /**
      * Writes the rendered image to a file.
      *
@@ -205,16 +371,191 @@ public class Camera implements Cloneable {
         imageWriter.writePixel(j, i, color);
         pixelManager.pixelDone();
     }
+
+    /**
+     * Casts a packet of primary rays through a block of pixels, traces them together
+     * and writes the resulting colors to the image.
+     *
+     * @param j0   the column index of the top left pixel of the block
+     * @param i0   the row index of the top left pixel of the block
+     * @param cols the amount of pixel columns of the block
+     * @param rows the amount of pixel rows of the block
+     */
+    private void castPacket(int j0, int i0, int cols, int rows) {
+        Ray[] rays = new Ray[cols * rows];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                rays[i * cols + j] = constructRay(nX, nY, j0 + j, i0 + i);
+        primitives.Color[] colors = rayTracer.traceRays(rays);
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                imageWriter.writePixel(j0 + j, i0 + i, colors[i * cols + j]);
+        pixelManager.pixelsDone(cols * rows);
+    }
+
+    /**
+     * Renders a tile of pixels, in packets if enabled, and writes it to the image as a whole.
+     * The tile is cut by the image borders.
+     *
+     * @param tile the tile index
+     */
+    private void renderTile(int tile) {
+        int j0 = pixelManager.tileCol(tile), i0 = pixelManager.tileRow(tile);
+        renderBlock(j0, i0, Math.min(tileSize, nX - j0), Math.min(tileSize, nY - i0), tileCellOrder);
+    }
+
+    /**
+     * Prepares the tiles of the image and the order of the pixels (or packets) inside a tile
+     * by the pixel order of the camera.
+     */
+    private void setTiles() {
+        pixelManager.setTileSize(tileSize, pixelOrder);
+        int cells = (tileSize + Math.max(packetSize, 1) - 1) / Math.max(packetSize, 1);
+        tileCellOrder = pixelOrder == PixelOrder.ROW_MAJOR ? null : pixelOrder.order(cells, cells);
+    }
+
+    /**
+     * Renders a rectangular block of pixels, in packets if enabled, and writes it to the image as a whole.
+     * The pixels (or packets) are traced in the given order of the cells of a tile,
+     * and the cells outside the block are skipped.
+     *
+     * @param j0    the column index of the top left pixel of the block
+     * @param i0    the row index of the top left pixel of the block
+     * @param cols  the amount of pixel columns of the block
+     * @param rows  the amount of pixel rows of the block
+     * @param order the order of the cells of a whole tile, or null for row-major order
+     */
+    private void renderBlock(int j0, int i0, int cols, int rows, int[] order) {
+        int step = Math.max(packetSize, 1);
+        int cellCols = (cols + step - 1) / step, cellRows = (rows + step - 1) / step;
+        int side = (tileSize + step - 1) / step;
+        primitives.Color[] colors = packetSize > 0 ? null : new primitives.Color[cols * rows];
+        int count = order == null ? cellCols * cellRows : order.length;
+        for (int k = 0; k < count; ++k) {
+            int cellCol = order == null ? k % cellCols : order[k] % side;
+            int cellRow = order == null ? k / cellCols : order[k] / side;
+            if (cellCol >= cellCols || cellRow >= cellRows) continue;
+            int j = cellCol * step, i = cellRow * step;
+            if (packetSize > 0)
+                castPacket(j0 + j, i0 + i, Math.min(step, cols - j), Math.min(step, rows - i));
+            else
+                colors[i * cols + j] = rayTracer.traceRay(constructRay(nX, nY, j0 + j, i0 + i));
+        }
+        if (packetSize > 0) return;
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                imageWriter.writePixel(j0 + j, i0 + i, colors[i * cols + j]);
+        pixelManager.pixelsDone(cols * rows);
+    }
+
+    /**
+     * Render image by a virtual thread per tile, or per row (per row of packets) if tiles are disabled.
+     * The virtual threads cost nearly nothing to create, and the tracing is bounded by the permits
+     * shared by all the renders of the process, so many cameras may render concurrently
+     * without oversubscribing the cores
+     * @return the camera object itself
+     */
+    private Camera renderImageVirtualThreads() {
+        List<Runnable> tasks = new ArrayList<>();
+        if (tileSize > 0) {
+            setTiles();
+            int tile;
+            while ((tile = pixelManager.nextTile()) >= 0) {
+                int t = tile;
+                tasks.add(() -> renderTile(t));
+            }
+        } else {
+            int height = Math.max(packetSize, 1);
+            for (int i = 0; i < nY; i += height) {
+                int i0 = i;
+                tasks.add(() -> renderBlock(0, i0, nX, Math.min(height, nY - i0), null));
+            }
+        }
+        runVirtualThreads(tasks.size(), k -> tasks.get(k).run());
+        return this;
+    }
+
+    /**
+     * Render image using multi-threading on a work-stealing fork/join pool of N workers (N is the threads count,
+     * or the amount of cores for -1). The tiles, in their claiming order, are split in halves recursively
+     * down to single tiles: a worker renders the first half of its range and leaves the second half forked
+     * on its queue, where an idle worker steals it. The stolen halves are whole runs of consecutive tiles,
+     * so a thief continues on tiles close to each other, and the work is rebalanced whenever a worker runs dry
+     * @return the camera object itself
+     */
+    private Camera renderImageTiles() {
+        setTiles();
+        int threads = threadsCount > 0 ? threadsCount : Runtime.getRuntime().availableProcessors();
+        int[] tiles = new int[pixelManager.tileCount()];
+        for (int k = 0; k < tiles.length; ++k) tiles[k] = pixelManager.nextTile();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new TileTask(this, tiles, 0, tiles.length));
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Rendering failed", e);
+        } finally {
+            pool.shutdown();
+        }
+        return this;
+    }
+
+    /**
+     * Task rendering the tiles {@code tiles[start..end)}.
+     * The tasks live only during a render and are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class TileTask extends RecursiveAction {
+        /** The rendering camera */
+        private final Camera camera;
+        /** The tile indices, in their claiming order */
+        private final int[] tiles;
+        /** First index (inclusive) */
+        private final int start;
+        /** Last index (exclusive) */
+        private final int end;
+
+        /**
+         * @param camera the rendering camera
+         * @param tiles  the tile indices, in their claiming order
+         * @param start  first index (inclusive)
+         * @param end    last index (exclusive)
+         */
+        TileTask(Camera camera, int[] tiles, int start, int end) {
+            this.camera = camera;
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                camera.renderTile(tiles[start]);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            TileTask second = new TileTask(camera, tiles, mid, end);
+            second.fork();
+            new TileTask(camera, tiles, start, mid).compute();
+            second.join();
+        }
+    }
+
     /**
      * Render image using multi-threading by creating and running raw threads* @return the camera object itself
      */
     private Camera renderImageRawThreads() {
         var threads = new LinkedList<Thread>();
-        while (threadsCount-- > 0)
+        for (int t = 0; t < threadsCount; ++t)
             threads.add(new Thread(() -> {
                 PixelManager.Pixel pixel;
-                while ((pixel = pixelManager.nextPixel()) != null)
-                    castRay(pixel.col(), pixel.row());
+                if (packetSize > 0)
+                    while ((pixel = pixelManager.nextBlock(packetSize)) != null)
+                        castPacket(pixel.col(), pixel.row(),
+                                Math.min(packetSize, nX - pixel.col()), Math.min(packetSize, nY - pixel.row()));
+                else
+                    while ((pixel = pixelManager.nextPixel()) != null)
+                        castRay(pixel.col(), pixel.row());
             }));
         for (var thread : threads) thread.start();
         try {
@@ -226,6 +567,16 @@ public class Camera implements Cloneable {
      * Render image using multi-threading by creating and running raw threads* @return the camera object itself
      */
     public Camera renderImageStream() {
+        if (packetSize > 0) {
+            int blockCols = (nX + packetSize - 1) / packetSize;
+            int blockRows = (nY + packetSize - 1) / packetSize;
+            IntStream.range(0, blockCols * blockRows).parallel() //
+                    .forEach(b -> {
+                        int j = b % blockCols * packetSize, i = b / blockCols * packetSize;
+                        castPacket(j, i, Math.min(packetSize, nX - j), Math.min(packetSize, nY - i));
+                    });
+            return this;
+        }
         IntStream.range(0, nY).parallel() //
                 .forEach(i -> IntStream.range(0, nX).parallel() //
                         .forEach(j -> castRay(j, i)));
@@ -236,6 +587,10 @@ public class Camera implements Cloneable {
      */
     public static class Builder {
         private final Camera camera = new Camera();
+        private BVHLayout bvhLayout = BVHLayout.BINARY;
+        private boolean bvhSinglePrecision = false;
+        private BVHBuilder bvhBuilder = null;
+        private String bvhOperation = null; // last BVH operation not reported yet by build(), null if none
 
         /**
          * Sets the direction vectors of the camera.
@@ -350,6 +705,9 @@ public class Camera implements Cloneable {
             if (camera.rayTracer == null) {
                 camera.rayTracer = new renderer.SimpleRayTracer(null);
             }
+            if (bvhOperation != null && camera.printInterval > 0)
+                System.out.printf("BVH %s time: %d ms%n", bvhOperation, camera.bvhBuildTime);
+            bvhOperation = null;
             try {
                 return (Camera) camera.clone();
             } catch (CloneNotSupportedException e) {
@@ -369,6 +727,9 @@ public class Camera implements Cloneable {
                 case SIMPLE:
                     camera.rayTracer = new renderer.SimpleRayTracer(scene);
                     break;
+                case GRID:
+                    camera.rayTracer = new GridRayTracer(scene);
+                    break;
                 default:
                     camera.rayTracer = null;
             }
@@ -393,6 +754,71 @@ public class Camera implements Cloneable {
         }
 
 
+        /**
+         * Enables tracing the primary rays in square packets of neighboring pixels.
+         * The rays of a packet share the traversal of a flattened binary BVH
+         * (see {@link #enableFlatBVH(Scene)}), which pays off for coherent primary rays;
+         * with other acceleration structures the rays of a packet are traced one by one.
+         *
+         * @param size the side of a packet in pixels, up to 8 (e.g. 8 for 8x8 packets),
+         *             or 0 to trace single rays (default)
+         * @return this Builder instance
+         * @throws IllegalArgumentException if the size is negative or larger than 8
+         */
+        public Builder setPacketSize(int size) {
+            if (size < 0 || size > MAX_PACKET_SIZE)
+                throw new IllegalArgumentException("Packet size must be between 0 and " + MAX_PACKET_SIZE);
+            camera.packetSize = size;
+            return this;
+        }
+
+        /**
+         * Enables multithreaded rendering by tiles: the image is divided into square tiles,
+         * which the rendering threads claim lock-free from one shared counter, one whole tile at a time,
+         * instead of claiming single pixels under a lock. Each tile is written to the image as a whole.
+         * Used when multithreading is enabled (see {@link #setMultithreading(int)}); with packets
+         * (see {@link #setPacketSize(int)}) the tiles are traced in packets, best with a tile size
+         * which is a multiple of the packet size.
+         *
+         * @param size the side of a tile in pixels (e.g. 16 or 32), or 0 to disable tiles (default)
+         * @return this Builder instance
+         * @throws IllegalArgumentException if the size is negative
+         */
+        public Builder setTileSize(int size) {
+            if (size < 0) throw new IllegalArgumentException("Tile size must be non-negative");
+            camera.tileSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the order of traversal of the tiles (see {@link #setTileSize(int)}) and of the pixels
+         * (or packets) inside each tile. The space-filling curves keep the consecutive rays of a thread,
+         * and the consecutive tiles, close on the screen, so they reuse the BVH nodes and primitives
+         * already in the cache of the core.
+         *
+         * @param order {@link PixelOrder#ROW_MAJOR} (default), {@link PixelOrder#MORTON} or {@link PixelOrder#HILBERT}
+         * @return this Builder instance
+         */
+        public Builder setPixelOrder(PixelOrder order) {
+            camera.pixelOrder = order;
+            return this;
+        }
+
+        /**
+         * Enables rendering by virtual threads: a virtual thread per tile (see {@link #setTileSize(int)}),
+         * or per row of pixels if tiles are disabled. The tracing of all the renders of the process
+         * together is bounded by the amount of cores, so a service may run many concurrent renders
+         * without the cost of creating platform threads per render and without oversubscribing the cores.
+         * Overrides {@link #setMultithreading(int)}.
+         *
+         * @param enabled true to render by virtual threads, false (default) otherwise
+         * @return this Builder instance
+         */
+        public Builder setVirtualThreads(boolean enabled) {
+            camera.virtualThreads = enabled;
+            return this;
+        }
+
         /**
          * Sets the interval for printing progress percentage.
          *
@@ -413,10 +839,107 @@ public class Camera implements Cloneable {
          * @return this Builder instance
          */
         public Builder enableBVH(Scene scene) {
-            scene.geometries.buildBVH();
+            buildBVH(scene, new MedianBuilder());
             return this;
 
         }
+
+        /**
+         * Enables bounding volume hierarchy (BVH) for the scene, built with the Surface Area Heuristic
+         * instead of the median split.
+         *
+         * @param scene the scene to be rendered
+         * @param sah   the SAH builder with its bin count, leaf size and cost settings
+         * @return this Builder instance
+         */
+        public Builder enableBVH(Scene scene, SAHBuilder sah) {
+            buildBVH(scene, sah);
+            return this;
+        }
+
+        /**
+         * Sets the node layout of the compiled BVH, used by the following {@code enableFlatBVH} calls.
+         *
+         * @param layout {@link BVHLayout#BINARY} (default) or {@link BVHLayout#WIDE} for 4-wide nodes
+         * @return this Builder instance
+         */
+        public Builder setBVHLayout(BVHLayout layout) {
+            bvhLayout = layout;
+            return this;
+        }
+
+        /**
+         * Sets whether the compiled BVH stores its node bounds in single precision,
+         * used by the following {@code enableFlatBVH} calls. The bounds are rounded outward,
+         * so the image is the same, and the traversal reads half the memory.
+         *
+         * @param singlePrecision true for float bounds, false (default) for double bounds
+         * @return this Builder instance
+         */
+        public Builder setBVHSinglePrecision(boolean singlePrecision) {
+            bvhSinglePrecision = singlePrecision;
+            return this;
+        }
+
+        /**
+         * Enables bounding volume hierarchy (BVH) for the scene and compiles it into
+         * the flat array-based form for traversal.
+         *
+         * @param scene the scene to be rendered
+         * @return this Builder instance
+         */
+        public Builder enableFlatBVH(Scene scene) {
+            buildBVH(scene, new MedianBuilder());
+            scene.geometries.flatten(bvhLayout, bvhSinglePrecision);
+            return this;
+        }
+
+        /**
+         * Enables bounding volume hierarchy (BVH) built with the Surface Area Heuristic
+         * and compiles it into the flat array-based form for traversal.
+         *
+         * @param scene the scene to be rendered
+         * @param sah   the SAH builder
+         * @return this Builder instance
+         */
+        public Builder enableFlatBVH(Scene scene, SAHBuilder sah) {
+            buildBVH(scene, sah);
+            scene.geometries.flatten(bvhLayout, bvhSinglePrecision);
+            return this;
+        }
+
+        /**
+         * Builds the BVH of the scene. The build time is kept for {@link Camera#getBVHBuildTime()}
+         * and printed by {@link #build()} if debug printing is enabled by then.
+         *
+         * @param scene   the scene to be rendered
+         * @param builder the BVH builder
+         */
+        private void buildBVH(Scene scene, BVHBuilder builder) {
+            builder.build(scene.geometries);
+            bvhBuilder = builder;
+            camera.bvhBuildTime = builder.getBuildTime();
+            bvhOperation = "build";
+        }
+
+        /**
+         * Updates the BVH of the scene after its shapes moved, for rendering the next frame of an animation.
+         * The hierarchy built by the last {@code enableBVH} or {@code enableFlatBVH} call is refitted,
+         * and rebuilt by the same builder only if its quality degraded too much
+         * (see {@link BVHBuilder#update(geometries.Geometries)}).
+         * If no BVH was built yet, it is built with the median split.
+         * The time is reported like the build time, see {@link #buildBVH}.
+         *
+         * @param scene the scene to be rendered
+         * @return this Builder instance
+         */
+        public Builder refitBVH(Scene scene) {
+            if (bvhBuilder == null) return enableBVH(scene);
+            boolean rebuilt = bvhBuilder.update(scene.geometries);
+            camera.bvhBuildTime = bvhBuilder.getBuildTime();
+            bvhOperation = rebuilt ? "rebuild" : "refit";
+            return this;
+        }
         /**
          * Enables the Camera Based Ray Tracing (CBR) feature for the scene.
          *
@@ -0,0 +1,63 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import geometries.RegularGrid;
+import primitives.Ray;
+import scene.Scene;
+
+import java.util.function.Consumer;
+
+/**
+ * Ray tracer which finds the intersections through a uniform grid of the scene shapes
+ * instead of the scene geometries collection. The shading is the same as in {@link SimpleRayTracer}.
+ * <p>
+ * The grid is built on the first traced ray, since the tracer is usually created
+ * before the shapes are added to the scene.
+ * </p>
+ */
+public class GridRayTracer extends SimpleRayTracer {
+    /**
+     * The grid of the scene shapes, built lazily.
+     */
+    private volatile RegularGrid grid = null;
+
+    /**
+     * Constructor to initialize the grid ray tracer with a scene.
+     *
+     * @param scene the 3D scene to be rendered
+     */
+    public GridRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Returns the grid of the scene shapes, building it on the first call.
+     *
+     * @return the grid
+     */
+    private RegularGrid getGrid() {
+        RegularGrid result = grid;
+        if (result == null) {
+            synchronized (this) {
+                result = grid;
+                if (result == null) grid = result = new RegularGrid(scene.geometries);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Intersection findClosestIntersection(Ray ray) {
+        return getGrid().findClosestIntersection(ray);
+    }
+
+    @Override
+    protected Intersection[] findClosestIntersections(Ray[] rays) {
+        return getGrid().findClosestIntersections(rays);
+    }
+
+    @Override
+    protected boolean isOccluded(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        return getGrid().isOccluded(ray, maxDistance, transparent);
+    }
+}
@@ -6,12 +6,19 @@ import java.io.*;
 import javax.imageio.ImageIO;
 
 import primitives.Color;
+import primitives.Double3;
 
 /**
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible of holding image related parameters of View Plane - pixel matrix
  * size and resolution
+ * <p>
+ * The pixel colors are accumulated in a primitive framebuffer - the sums of the
+ * RGB components of the samples of each pixel and their amount - so writing a
+ * sample creates no object, and any amount of samples can be added to a pixel.
+ * The samples are averaged and converted to 8-bit colors once, when the image is written.
+ * </p>
  * @author Dan
  */
 final class ImageWriter {
@@ -26,8 +33,11 @@ final class ImageWriter {
     */
    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
 
-   /** Image generation buffer (the matrix of the pixels) */
-   private final BufferedImage image;
+   /** Amount of floats per pixel in the framebuffer - red, green and blue sums and the amount of samples */
+   private static final int PIXEL_STRIDE = 4;
+
+   /** Accumulation framebuffer, {@link #PIXEL_STRIDE} floats per pixel, row after row */
+   private final float[]       frame;
 
    // ***************** Constructors ********************** //
    /**
@@ -39,7 +49,7 @@ final class ImageWriter {
       this.nX = nX;
       this.nY = nY;
 
-      image   = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+      frame   = new float[nX * nY * PIXEL_STRIDE];
    }
 
    // ***************** Getters ********************** //
@@ -63,6 +73,12 @@ final class ImageWriter {
     * @param imageName the name of png file
     */
    void writeToImage(String imageName) {
+      BufferedImage image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+      int[] row = new int[nX];
+      for (int y = 0; y < nY; ++y) {
+         for (int x = 0; x < nX; ++x) row[x] = getPixel(x, y);
+         image.setRGB(0, y, nX, 1, row, 0, nX);
+      }
       try {
          File file = new File(FOLDER_PATH + '/' + imageName + ".png");
          ImageIO.write(image, "png", file);
@@ -71,13 +87,89 @@ final class ImageWriter {
       }
    }
 
+   /**
+    * Returns the 8-bit color of a pixel as it is written to the image file - the average
+    * of its samples, or black if it has none
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the red, green and blue components packed as in {@link java.awt.Color#getRGB()},
+    *                without the alpha
+    * @throws IllegalArgumentException if the pixel is out of the image
+    */
+   int getPixel(int xIndex, int yIndex) {
+      int   p     = offset(xIndex, yIndex);
+      float count = frame[p + 3];
+      return count == 0 ? 0
+         : channel(frame[p] / count) << 16 | channel(frame[p + 1] / count) << 8 | channel(frame[p + 2] / count);
+   }
+
    /**
     * The function writePixel writes a color of a specific pixel into pixel color
     * matrix
     * @param xIndex X axis index of the pixel
     * @param yIndex Y axis index of the pixel
     * @param color  final color of the pixel
+    * @throws IllegalArgumentException if the pixel is out of the image
     */
-   void writePixel(int xIndex, int yIndex, Color color) { image.setRGB(xIndex, yIndex, color.getColor().getRGB()); }
+   void writePixel(int xIndex, int yIndex, Color color) {
+      int p = offset(xIndex, yIndex);
+      Double3 rgb = color.getRgb();
+      frame[p]     = toFloat(rgb.d1());
+      frame[p + 1] = toFloat(rgb.d2());
+      frame[p + 2] = toFloat(rgb.d3());
+      frame[p + 3] = 1;
+   }
+
+   /**
+    * The function addSample adds a color sample to a specific pixel, the pixel
+    * is written as the average of all its samples
+    * @param xIndex X axis index of the pixel
+    * @param yIndex Y axis index of the pixel
+    * @param color  color of the sample
+    * @throws IllegalArgumentException if the pixel is out of the image
+    */
+   void addSample(int xIndex, int yIndex, Color color) {
+      int p = offset(xIndex, yIndex);
+      Double3 rgb = color.getRgb();
+      frame[p]     += toFloat(rgb.d1());
+      frame[p + 1] += toFloat(rgb.d2());
+      frame[p + 2] += toFloat(rgb.d3());
+      frame[p + 3] += 1;
+   }
+
+   /**
+    * Calculates the offset of a pixel in the framebuffer
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the offset of the first float of the pixel
+    * @throws IllegalArgumentException if the pixel is out of the image
+    */
+   private int offset(int xIndex, int yIndex) {
+      if (xIndex < 0 || xIndex >= nX || yIndex < 0 || yIndex >= nY)
+         throw new IllegalArgumentException("Pixel (" + xIndex + ", " + yIndex + ") is out of the image");
+      return (yIndex * nX + xIndex) * PIXEL_STRIDE;
+   }
+
+   /**
+    * Rounds a color component to single precision toward zero, so a pixel of a
+    * single sample truncates to the same 8-bit component as {@link Color#getColor()}
+    * @param  component the color component
+    * @return           the greatest float not greater than the component
+    */
+   private static float toFloat(double component) {
+      float f = (float) component;
+      return f > component ? Math.nextDown(f) : f;
+   }
+
+   /**
+    * Converts an averaged color component to 8 bits, any component bigger than
+    * 255 is set to 255 the same way as {@link Color#getColor()}
+    * @param  component the color component
+    * @return           the 8-bit component
+    */
+   private static int channel(float component) {
+      int c = (int) component;
+      return c > 255 ? 255 : c;
+   }
 
 }
@@ -1,5 +1,8 @@
 package renderer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * PixelManager is a helper class. It is used for multi-threading in the
  * renderer and
@@ -29,10 +32,27 @@ class PixelManager {
     private volatile int        cRow          = 0;
     /** Currently processed column of pixels */
     private volatile int        cCol          = -1;
-    /** Amount of pixels that have been processed */
-    private volatile long       pixels        = 0l;
-    /** Last printed progress update percentage */
-    private volatile int        lastPrinted   = 0;
+    /** Column of the next block of pixels */
+    private int                 cBlockCol     = 0;
+    /** Side of the square tiles of pixels, 0 if the image is not divided into tiles */
+    private int                 tileSize      = 0;
+    /** Amount of tiles in a row of tiles */
+    private int                 tileCols      = 0;
+    /** Total amount of tiles */
+    private int                 tileCount     = 0;
+    /** Tile indices in the order of claiming, or null for row-major order */
+    private int[]               tileOrder     = null;
+    /** Index of the next tile to be claimed */
+    private final AtomicInteger cTile         = new AtomicInteger();
+    /**
+     * Amount of pixels that have been processed, striped between the threads so counting
+     * a pixel never waits for another thread
+     */
+    private final LongAdder     pixels        = new LongAdder();
+    /** Last printed progress update percentage, used by the reporter thread only */
+    private int                 lastPrinted   = 0;
+    /** Thread printing the progress percentage, or null if printing is not required */
+    private Thread              reporter      = null;
 
     /** Flag of debug printing of progress percentage */
     private boolean             print         = false;
@@ -40,16 +60,13 @@ class PixelManager {
     private long                printInterval = 100l;
     /** Printing format */
     private static final String PRINT_FORMAT  = "%5.1f%%\r";
+    /** Time between progress checks of the reporter thread in milliseconds */
+    private static final long   REPORT_PERIOD = 100l;
     /**
      * Mutual exclusion object for synchronizing next pixel allocation between
      * threads
      */
     private Object mutexNext = new Object();
-    /**
-     * Mutual exclusion object for printing progress percentage in console window
-     * by different threads
-     */
-    private Object mutexPixels = new Object();
 
     /**
      * Initialize pixel manager data for multi-threading
@@ -65,7 +82,52 @@ class PixelManager {
         totalPixels   = (long) maxRows * maxCols;
         printInterval = interval.length == 0 ? printInterval : (long) (interval[0] * 10);
         print         = printInterval != 0;
-        if (print) System.out.printf(PRINT_FORMAT, 0d);
+        if (print) {
+            System.out.printf(PRINT_FORMAT, 0d);
+            reporter = new Thread(this::report, "progress-reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+    }
+
+    /**
+     * Body of the reporter thread - checks the progress periodically and prints the
+     * percentage whenever it has grown by the printing interval, until all the pixels
+     * are done or the thread is interrupted by {@link #finish()}
+     */
+    private void report() {
+        try {
+            while (printProgress(false) < 1000) Thread.sleep(REPORT_PERIOD);
+        } catch (InterruptedException ignore) {}
+    }
+
+    /**
+     * Prints the progress percentage if it has grown by the printing interval since the last print
+     * @param  last true to print any growth, for the last print
+     * @return      the progress in per mille
+     */
+    private int printProgress(boolean last) {
+        int percentage = (int) (1000l * pixels.sum() / totalPixels);
+        if (percentage - lastPrinted >= (last ? 1 : printInterval)) {
+            lastPrinted = percentage;
+            System.out.printf(PRINT_FORMAT, percentage / 10d);
+        }
+        return percentage;
+    }
+
+    /**
+     * Stops the reporter thread at the end of the rendering and prints the final progress
+     */
+    void finish() {
+        if (reporter == null) return;
+        reporter.interrupt();
+        try {
+            reporter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reporter = null;
+        printProgress(true);
     }
 
     /**
@@ -81,30 +143,95 @@ class PixelManager {
 
             ++cCol;
             if (cCol < maxCols)
-                return new Pixel(cRow, cCol);
+                return new Pixel(cCol, cRow);
 
             cCol = 0;
             ++cRow;
             if (cRow < maxRows)
-                return new Pixel(cRow, cCol);
+                return new Pixel(cCol, cRow);
         }
         return null;
     }
 
-    /** Finish pixel processing by updating and printing of progress percentage */
-    void pixelDone() {
-        boolean flag       = false;
-        int     percentage = 0;
-        synchronized (mutexPixels) {
-            ++pixels;
-            if (print) {
-                percentage = (int) (1000l * pixels / totalPixels);
-                if (percentage - lastPrinted >= printInterval) {
-                    lastPrinted = percentage;
-                    flag        = true;
-                }
+    /**
+     * Provides the next available square block of pixels, in the same thread-safe manner
+     * as {@link #nextPixel()}. The blocks are allocated row by row; the blocks on the right and
+     * bottom edges of the image may be cut by the image borders.
+     * @param  size the side of the block in pixels
+     * @return      the top left pixel of the block, or null if there are no more blocks
+     */
+    Pixel nextBlock(int size) {
+        synchronized (mutexNext) {
+            if (cRow >= maxRows) return null;
+            Pixel block = new Pixel(cBlockCol, cRow);
+            cBlockCol += size;
+            if (cBlockCol >= maxCols) {
+                cBlockCol = 0;
+                cRow += size;
             }
-            if (flag) System.out.printf(PRINT_FORMAT, percentage / 10d);
+            return block;
         }
     }
+
+    /**
+     * Divides the image into square tiles, which are claimed by {@link #nextTile()} in the given order.
+     * The tiles on the right and bottom edges of the image may be cut by the image borders.
+     * @param size  the side of a tile in pixels
+     * @param order the order of claiming the tiles
+     */
+    void setTileSize(int size, PixelOrder order) {
+        tileSize  = size;
+        tileCols  = (maxCols + size - 1) / size;
+        int tileRows = (maxRows + size - 1) / size;
+        tileCount = tileCols * tileRows;
+        tileOrder = order == PixelOrder.ROW_MAJOR ? null : order.order(tileCols, tileRows);
+    }
+
+    /**
+     * Claims the next tile of pixels. Unlike {@link #nextPixel()}, no lock is taken and
+     * no object is created - the tiles are claimed by an atomic counter, so any amount of
+     * threads can claim whole tiles without waiting for each other.
+     * @return the index of the tile, or -1 if there are no more tiles
+     */
+    int nextTile() {
+        int tile = cTile.getAndIncrement();
+        if (tile >= tileCount) return -1;
+        return tileOrder == null ? tile : tileOrder[tile];
+    }
+
+    /**
+     * Amount of tiles of the image
+     * @return the amount of tiles, 0 if the image is not divided into tiles
+     */
+    int tileCount() { return tileCount; }
+
+    /**
+     * Column of the top left pixel of a tile
+     * @param  tile the tile index
+     * @return      the pixel column
+     */
+    int tileCol(int tile) { return tile % tileCols * tileSize; }
+
+    /**
+     * Row of the top left pixel of a tile
+     * @param  tile the tile index
+     * @return      the pixel row
+     */
+    int tileRow(int tile) { return tile / tileCols * tileSize; }
+
+    /**
+     * Finish pixel processing by updating the progress - no lock is taken,
+     * the progress percentage is printed by a separate reporter thread
+     */
+    void pixelDone() {
+        pixels.increment();
+    }
+
+    /**
+     * Finish processing of several pixels (e.g. a whole tile) by updating the progress
+     * @param count the amount of pixels
+     */
+    void pixelsDone(int count) {
+        pixels.add(count);
+    }
 }
\ No newline at end of file
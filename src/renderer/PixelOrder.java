@@ -0,0 +1,89 @@
+package renderer;
+
+/**
+ * Orders of traversal of the tiles of the image and of the pixels (or packets) inside a tile.
+ * <p>
+ * A space-filling curve keeps consecutive work items next to each other on the screen in both
+ * directions, so consecutive rays of a thread mostly visit the same BVH nodes and primitives,
+ * which are still in the cache of its core.
+ * </p>
+ */
+public enum PixelOrder {
+   /** Row after row, left to right (default) */
+   ROW_MAJOR,
+   /** Morton (Z-order) curve - recursive Z shaped quadrants */
+   MORTON,
+   /** Hilbert curve - every cell is a neighbor of the previous one */
+   HILBERT;
+
+   /**
+    * Calculates the order of the cells of a grid. The curves cover the smallest
+    * power of 2 square containing the grid, and the cells outside the grid are skipped.
+    * @param  cols the amount of columns of the grid
+    * @param  rows the amount of rows of the grid
+    * @return      the cell indices ({@code row * cols + col}) in the order of traversal
+    */
+   int[] order(int cols, int rows) {
+      int[] cells = new int[cols * rows];
+      if (this == ROW_MAJOR) {
+         for (int i = 0; i < cells.length; ++i) cells[i] = i;
+         return cells;
+      }
+
+      int side = Integer.highestOneBit(Math.max(Math.max(cols, rows), 1) * 2 - 1);
+      int count = 0;
+      for (int d = 0; count < cells.length; ++d) {
+         int x, y;
+         if (this == MORTON) {
+            x = compact(d);
+            y = compact(d >>> 1);
+         } else {
+            long xy = hilbert(side, d);
+            x = (int) (xy >>> 32);
+            y = (int) xy;
+         }
+         if (x < cols && y < rows) cells[count++] = y * cols + x;
+      }
+      return cells;
+   }
+
+   /**
+    * Extracts the even bits of a Morton code
+    * @param  code the Morton code
+    * @return      the coordinate made of the even bits
+    */
+   private static int compact(int code) {
+      code &= 0x55555555;
+      code = (code | code >>> 1) & 0x33333333;
+      code = (code | code >>> 2) & 0x0F0F0F0F;
+      code = (code | code >>> 4) & 0x00FF00FF;
+      return (code | code >>> 8) & 0x0000FFFF;
+   }
+
+   /**
+    * Converts a distance along the Hilbert curve of a square into the cell coordinates
+    * @param  side the side of the square, a power of 2
+    * @param  d    the distance along the curve
+    * @return      the column in the high 32 bits and the row in the low 32 bits
+    */
+   private static long hilbert(int side, int d) {
+      int x = 0, y = 0;
+      for (int s = 1; s < side; s *= 2) {
+         int rx = 1 & d / 2;
+         int ry = 1 & (d ^ rx);
+         if (ry == 0) {
+            if (rx == 1) {
+               x = s - 1 - x;
+               y = s - 1 - y;
+            }
+            int t = x;
+            x = y;
+            y = t;
+         }
+         x += s * rx;
+         y += s * ry;
+         d /= 4;
+      }
+      return (long) x << 32 | y;
+   }
+}
@@ -32,4 +32,17 @@ public abstract class RayTracerBase {
      * @return the color seen along the ray
      */
     public abstract Color traceRay(Ray ray);
+
+    /**
+     * Traces a packet of rays and calculates the color seen along each of them.
+     * The default implementation traces the rays one by one.
+     *
+     * @param rays the rays to trace, preferably coherent (e.g. neighboring primary rays)
+     * @return the color seen along each ray
+     */
+    public Color[] traceRays(Ray[] rays) {
+        Color[] colors = new Color[rays.length];
+        for (int i = 0; i < rays.length; ++i) colors[i] = traceRay(rays[i]);
+        return colors;
+    }
 }
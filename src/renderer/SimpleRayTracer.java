@@ -8,7 +8,6 @@
 
 package renderer;
 
-import geometries.Geometries;
 import geometries.Intersectable.Intersection;
 import geometries.Material;
 import lighting.PointLight;
@@ -16,8 +15,7 @@ import primitives.*;
 import lighting.LightSource;
 import scene.Scene;
 
-import java.util.List;
-import java.util.Objects;
+import java.util.function.Consumer;
 
 import static primitives.Util.alignZero;
 
@@ -47,17 +45,17 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private Double3 calcSpecular(Intersection intersection) {
         Vector l = intersection.lightDirection;
-        Vector n = intersection.normalAtPoint;
+        Vector n = intersection.getNormal();
         Vector v = intersection.rayDirection;
 
         double ln = alignZero(l.dotProduct(n));
         if (ln == 0) return Double3.ZERO;
 
-        Vector r = l.subtract(n.scale(2 * ln)).normalize();
-        double minusVR = -alignZero(v.dotProduct(r));
+        MutableVector r = new MutableVector(l).addScaled(n, -2 * ln).normalize();
+        double minusVR = -alignZero(r.dotProduct(v));
         if (minusVR <= 0) return Double3.ZERO;
 
-        return intersection.material.kS.scale(Math.pow(minusVR, intersection.material.sh));
+        return intersection.getMaterial().kS.scale(Math.pow(minusVR, intersection.getMaterial().sh));
     }
 
     /**
@@ -69,7 +67,7 @@ public class SimpleRayTracer extends RayTracerBase {
     private Double3 calcDiffusive(Intersection intersection) {
         double nl = intersection.dotProductLightNormal;
         double nlAbs = Math.abs(alignZero(nl));
-        return intersection.material.kD.scale(nlAbs);
+        return intersection.getMaterial().kD.scale(nlAbs);
     }
 
     /**
@@ -80,23 +78,56 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
-        if (Objects.equals(scene.geometries, new Geometries())) {
-            return scene.background;
-        }
-
         Intersection closestIntersection = findClosestIntersection(ray);
         return closestIntersection == null ? scene.background : calcColor(closestIntersection, ray);
     }
 
+    /**
+     * Traces a packet of rays, finding their closest intersections together
+     * (see {@link geometries.Intersectable#findClosestIntersections(Ray[])}) and shading each one.
+     *
+     * @param rays the rays to trace
+     * @return the color seen along each ray
+     */
+    @Override
+    public Color[] traceRays(Ray[] rays) {
+        Intersection[] intersections = findClosestIntersections(rays);
+        Color[] colors = new Color[rays.length];
+        for (int i = 0; i < rays.length; ++i)
+            colors[i] = intersections[i] == null ? scene.background : calcColor(intersections[i], rays[i]);
+        return colors;
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with the objects in the scene.
+     *
+     * @param rays the rays
+     * @return the closest intersection of each ray, or null for a ray without intersections
+     */
+    protected Intersection[] findClosestIntersections(Ray[] rays) {
+        return scene.geometries.findClosestIntersections(rays);
+    }
+
     /**
      * Finds the closest intersection of the ray with any object in the scene.
      *
      * @param ray the ray
      * @return the closest intersection
      */
-    private Intersection findClosestIntersection(Ray ray) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        return intersections == null ? null : ray.findClosestIntersection(intersections);
+    protected Intersection findClosestIntersection(Ray ray) {
+        return scene.geometries.findClosestIntersection(ray);
+    }
+
+    /**
+     * Checks whether the ray is blocked by an opaque object in the scene closer than the given distance.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance to the light source
+     * @param transparent consumer of the intersections with transparent objects on the way, or null
+     * @return true if the ray is blocked
+     */
+    protected boolean isOccluded(Ray ray, double maxDistance, Consumer<Intersection> transparent) {
+        return scene.geometries.isOccluded(ray, maxDistance, transparent);
     }
 
     /**
@@ -108,8 +139,8 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private boolean setLightSource(Intersection intersection, LightSource light) {
         intersection.lightSource = light;
-        intersection.lightDirection = light.getL(intersection.point);
-        intersection.dotProductLightNormal = intersection.normalAtPoint.dotProduct(intersection.lightDirection);
+        intersection.lightDirection = light.getL(intersection.getPoint());
+        intersection.dotProductLightNormal = intersection.getNormal().dotProduct(intersection.lightDirection);
         return intersection.dotProductRayNormal * intersection.dotProductLightNormal > 0;
     }
 
@@ -120,20 +151,24 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return true if point is not in shadow
      */
     private boolean unshaded(Intersection intersection) {
-        Vector l = intersection.lightDirection.scale(-1);
-        Point shadowOrigin = intersection.point.add(intersection.normalAtPoint.scale(intersection.dotProductLightNormal < 0 ? DELTA : -DELTA));
-        Ray shadowRay = new Ray(shadowOrigin, l, intersection.normalAtPoint);
-
-        List<Intersection> intersections = scene.geometries.calculateIntersections(shadowRay);
-        if (intersections == null) return true;
+        return !isOccluded(constructShadowRay(intersection), intersection.lightSource.getDistance(intersection.getPoint()), null);
+    }
 
-        double lightDistance = intersection.lightSource.getDistance(intersection.point);
-        for (Intersection i : intersections) {
-            if (shadowOrigin.distance(i.point) < lightDistance) {
-                if (i.material.kT.lowerThan(MIN_CALC_COLOR_K)) return false;
-            }
-        }
-        return true;
+    /**
+     * Constructs the ray from the intersection point toward the light source.
+     * The head is moved off the surface toward the light by the shadow offset and by the
+     * ray offset, computed in place instead of through a chain of immutable points and vectors.
+     *
+     * @param intersection the intersection, with its light source set
+     * @return the shadow ray
+     */
+    private Ray constructShadowRay(Intersection intersection) {
+        Vector n = intersection.getNormal();
+        double offset = intersection.dotProductLightNormal < 0 ? DELTA : -DELTA;
+        MutableVector head = new MutableVector(intersection.getPoint())
+                .addScaled(n, offset)
+                .addScaled(n, alignZero(-intersection.dotProductLightNormal) > 0 ? DELTA : -DELTA);
+        return new Ray(head.toPoint(), intersection.lightDirection.scale(-1));
     }
 
 
@@ -144,23 +179,14 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return the transparency factor
      */
     private Double3 transparency(Intersection intersection) {
-        Vector l = intersection.lightDirection.scale(-1);
-        Point shadowOrigin = intersection.point.add(intersection.normalAtPoint.scale(intersection.dotProductLightNormal < 0 ? DELTA : -DELTA));
-        Ray shadowRay = new Ray(shadowOrigin, l, intersection.normalAtPoint);
-
-        List<Intersection> intersections = scene.geometries.calculateIntersections(shadowRay);
-        if (intersections == null) return Double3.ONE;
-
-        double lightDistance = intersection.lightSource.getDistance(intersection.point);
-        Double3 ktr = Double3.ONE;
-
-        for (Intersection i : intersections) {
-            if (shadowOrigin.distance(i.point) < lightDistance) {
-                ktr = ktr.product(i.geometry.getMaterial().kT);
-                if (ktr.lowerThan(MIN_CALC_COLOR_K)) return Double3.ZERO;
-            }
-        }
-        return ktr;
+        Ray shadowRay = constructShadowRay(intersection);
+
+        // The search stops at the first opaque object; transparent ones on the way attenuate the light
+        Double3[] ktr = {Double3.ONE};
+        double lightDistance = intersection.lightSource.getDistance(intersection.getPoint());
+        if (isOccluded(shadowRay, lightDistance, i -> ktr[0] = ktr[0].product(i.getMaterial().kT)))
+            return Double3.ZERO;
+        return ktr[0].lowerThan(MIN_CALC_COLOR_K) ? Double3.ZERO : ktr[0];
     }
 
     /**
@@ -180,7 +206,7 @@ public class SimpleRayTracer extends RayTracerBase {
                     : transparency(intersection);
 
             if (ktr.product(k).greaterThan(MIN_CALC_COLOR_K)) {
-                Color iL = light.getIntensity(intersection.point).scale(ktr);
+                Color iL = light.getIntensity(intersection.getPoint()).scale(ktr);
                 color = color.add(iL.scale(calcDiffusive(intersection).add(calcSpecular(intersection))));
             }
         }
@@ -201,19 +227,21 @@ public class SimpleRayTracer extends RayTracerBase {
 
     private Ray constructReflectedRay(Intersection intersection) {
         Vector dir = intersection.rayDirection;
-        Vector normal = intersection.normalAtPoint;
-        Point point = intersection.point;
-        Vector reflectedDir = dir.subtract(normal.scale(2 * dir.dotProduct(normal))).normalize();
-        return new Ray(point, reflectedDir, normal);
+        Vector normal = intersection.getNormal();
+        MutableVector reflected = new MutableVector(dir).addScaled(normal, -2 * dir.dotProduct(normal)).normalize();
+        // The head is moved off the surface to the side of the reflected direction
+        MutableVector head = new MutableVector(intersection.getPoint())
+                .addScaled(normal, alignZero(reflected.dotProduct(normal)) > 0 ? DELTA : -DELTA);
+        return new Ray(head.toPoint(), reflected.toVector());
     }
 
     private Ray constructRefractedRay(Intersection intersection) {
-        return new Ray(intersection.point, intersection.rayDirection, intersection.normalAtPoint);
+        return new Ray(intersection.getPoint(), intersection.rayDirection, intersection.getNormal());
     }
 
     private Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
         Color color = Color.BLACK;
-        Material material = intersection.material;
+        Material material = intersection.getMaterial();
 
         color = color.add(calcGlobalEffect(constructReflectedRay(intersection), material.kR, level, k));
         color = color.add(calcGlobalEffect(constructRefractedRay(intersection), material.kT, level, k));
@@ -232,8 +260,7 @@ public class SimpleRayTracer extends RayTracerBase {
 
     private boolean preprocessIntersection(Intersection intersection, Vector rayDirection) {
         intersection.rayDirection = rayDirection.normalize();
-        intersection.normalAtPoint = intersection.geometry.getNormal(intersection.point);
-        intersection.dotProductRayNormal = alignZero(intersection.rayDirection.dotProduct(intersection.normalAtPoint));
+        intersection.dotProductRayNormal = alignZero(intersection.rayDirection.dotProduct(intersection.getNormal()));
         return intersection.dotProductRayNormal != 0;
     }
 
@@ -245,7 +272,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return shadow intensity modifier
      */
     private Double3 calcLocalEffectsSoftShadows(PointLight lightSource, Intersection intersection) {
-        Vector l = lightSource.getL(intersection.point);
+        Vector l = lightSource.getL(intersection.getPoint());
         Vector vUp;
 
         try {
@@ -264,10 +291,10 @@ public class SimpleRayTracer extends RayTracerBase {
         for (int i = 0; i < numSamples; i++) {
             for (int j = 0; j < numSamples; j++) {
                 try {
-                    Ray shadowRay = area.constructRay(j, i, intersection.point);
+                    Ray shadowRay = area.constructRay(j, i, intersection.getPoint());
                     if (shadowRay != null) {
                         validRays++;
-                        if (isBlocked(shadowRay, lightSource.getDistance(intersection.point))) {
+                        if (isBlocked(shadowRay, lightSource.getDistance(intersection.getPoint()))) {
                             totalShadow++;
                         }
                     }
@@ -286,15 +313,6 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return true if the ray is blocked
      */
     private boolean isBlocked(Ray shadowRay, double lightDistance) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(shadowRay);
-        if (intersections == null) return false;
-
-        for (Intersection i : intersections) {
-            if (shadowRay.getHead().distance(i.point) < lightDistance - DELTA &&
-                    i.geometry.getMaterial().kT.lowerThan(MIN_CALC_COLOR_K)) {
-                return true;
-            }
-        }
-        return false;
+        return isOccluded(shadowRay, lightDistance - DELTA, null);
     }
 }
@@ -0,0 +1,60 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link geometries.BoundingBox} class.
+ */
+class BoundingBoxTests {
+    private static final double DELTA = 0.000001;
+    private final BoundingBox box = new BoundingBox(0, 1, 0, 1, 0, 1);
+
+    /**
+     * Test method for {@link BoundingBox#intersects(Ray, double, double)}.
+     */
+    @Test
+    void testIntersectsRange() {
+        Ray ray = new Ray(new Point(0.5, 0.5, -2), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Box inside the range
+        assertTrue(box.intersects(ray, 0, 10), "Ray must hit the box");
+        // TC02: Box beyond the range
+        assertFalse(box.intersects(ray, 0, 1.5), "Box beyond the range must be missed");
+        // TC03: Box before the range
+        assertFalse(box.intersects(ray, 3.5, 10), "Box before the range must be missed");
+        // TC04: Ray beside the box
+        assertFalse(box.intersects(new Ray(new Point(2, 0.5, -2), new Vector(0, 0, 1)), 0, 10),
+                "Ray beside the box must miss it");
+        // TC05: Ray pointing away from the box
+        assertFalse(box.intersects(new Ray(new Point(0.5, 0.5, -2), new Vector(0, 0, -1)), 0, 10),
+                "Box behind the ray must be missed");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Ray parallel to the X slab, starting exactly on its plane
+        assertTrue(box.intersects(new Ray(new Point(0, 0.5, -2), new Vector(0, 0, 1)), 0, 10),
+                "Ray on a slab plane must not be lost to NaN");
+        // TC11: Ray starting inside the box
+        assertEquals(0, box.entryDistance(new Ray(new Point(0.5, 0.5, 0.5), new Vector(1, 1, 1))), DELTA,
+                "Ray starting inside must enter at 0");
+    }
+
+    /**
+     * Test method for {@link BoundingBox#entryDistance(Ray)}.
+     */
+    @Test
+    void testEntryDistance() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray entering through a face
+        assertEquals(2, box.entryDistance(new Ray(new Point(0.5, 0.5, -2), new Vector(0, 0, 1))), DELTA,
+                "Wrong entry distance");
+        // TC02: Ray missing the box
+        assertEquals(Double.POSITIVE_INFINITY,
+                box.entryDistance(new Ray(new Point(0.5, 3, -2), new Vector(0, 0, 1))), "Missed box must be infinitely far");
+    }
+}
@@ -0,0 +1,26 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+
+/**
+ * Sphere which counts the closest-hit tests made against it, for the tests of the traversal order.
+ */
+class CountingSphere extends Sphere {
+    /** Amount of closest-hit tests */
+    int tests = 0;
+
+    /**
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     */
+    CountingSphere(Point center, double radius) {
+        super(center, radius);
+    }
+
+    @Override
+    protected boolean intersect(Ray ray, HitRecord hit) {
+        ++tests;
+        return super.intersect(ray, hit);
+    }
+}
@@ -3,12 +3,15 @@ package geometries;
 import org.junit.jupiter.api.Test;
 import primitives.Point;
 import primitives.Ray;
+import primitives.Transform;
 import primitives.Vector;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Unit tests for the {@link Geometries} class.
@@ -79,4 +82,546 @@ class GeometriesTests {
         assertNotNull(result, "Expected non-null when all shapes are intersected");
         assertEquals(4, result.size(), "Expected 4 intersection points");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link SAHBuilder#build(Geometries)}.
+     * The hierarchy must report exactly the same intersections as the flat collection.
+     */
+    @Test
+    void testSAHBuild() {
+        Geometries flat = new Geometries();
+        Geometries bvh = new Geometries();
+        for (int i = 0; i < 10; ++i) {
+            for (int j = 0; j < 10; ++j) {
+                Triangle triangle = new Triangle(new Point(i, j, 5), new Point(i + 1, j, 5), new Point(i, j + 1, 5));
+                flat.add(triangle);
+                bvh.add(triangle);
+            }
+        }
+        Sphere sphere = new Sphere(new Point(3, 3, 10), 1);
+        Plane floor = new Plane(new Point(0, 0, 20), new Vector(0, 0, 1));
+        flat.add(sphere, floor);
+        bvh.add(sphere, floor);
+        new SAHBuilder().setBinCount(8).setLeafSize(1).build(bvh);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through a triangle, the sphere and the plane
+        Ray ray = new Ray(new Point(3.2, 3.2, 0), new Vector(0, 0, 1));
+        assertEquals(4, bvh.findIntersections(ray).size(), "Wrong number of intersections through the hierarchy");
+        assertEquals(flat.findIntersections(ray).size(), bvh.findIntersections(ray).size(),
+                "Hierarchy and flat collection must agree");
+
+        // TC02: Ray missing all the finite shapes still hits the plane
+        ray = new Ray(new Point(50, 50, 0), new Vector(0, 0, 1));
+        assertEquals(1, bvh.findIntersections(ray).size(), "Unbounded shape must not be culled");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray parallel to everything
+        ray = new Ray(new Point(-5, -5, 0), new Vector(1, 0, 0));
+        assertNull(bvh.findIntersections(ray), "Expected no intersections");
+
+        // TC04: Splitting forced down to single shapes keeps the same intersections
+        Geometries split = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j)
+                split.add(new Triangle(new Point(i, j, 5), new Point(i + 1, j, 5), new Point(i, j + 1, 5)));
+        split.add(sphere, floor);
+        new SAHBuilder().setLeafSize(1).setMaxLeafSize(1).build(split);
+        ray = new Ray(new Point(3.2, 3.2, 0), new Vector(0, 0, 1));
+        assertEquals(4, split.findIntersections(ray).size(), "Wrong number of intersections with single shape leaves");
+        assertThrows(IllegalArgumentException.class, () -> new SAHBuilder().setMaxLeafSize(0),
+                "Maximum leaf size must be positive");
+    }
+
+    /**
+     * Test method for {@link Geometries#findClosestIntersection(Ray)} and
+     * {@link Geometries#findClosestIntersection(Ray, double)} on nested collections.
+     * The children are visited nearest box first, so a child whose box lies beyond
+     * the closest hit is never tested, whatever its place in the collection.
+     */
+    @Test
+    void testFindClosestIntersectionNearFirst() {
+        CountingSphere near = new CountingSphere(new Point(0, 0, 10), 1);
+        CountingSphere far = new CountingSphere(new Point(0, 0, 30), 1);
+        CountingSphere middle = new CountingSphere(new Point(0, 0, 20), 1);
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Two children, the nearer one listed second
+        Geometries geometries = new Geometries(new Geometries(far), new Geometries(near));
+        geometries.setBoundingBox();
+        assertEquals(new Point(0, 0, 9), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(1, near.tests, "Near sphere must be tested");
+        assertEquals(0, far.tests, "Far sphere must be skipped");
+
+        // TC02: Three children, the nearest one listed last
+        near.tests = far.tests = 0;
+        geometries = new Geometries(new Geometries(far), new Geometries(middle), new Geometries(near));
+        geometries.setBoundingBox();
+        assertEquals(new Point(0, 0, 9), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(1, near.tests, "Nearest sphere must be tested");
+        assertEquals(0, middle.tests + far.tests, "Farther spheres must be skipped");
+
+        // TC03: Distance between the first two spheres finds the nearest one
+        near.tests = 0;
+        assertEquals(new Point(0, 0, 9), geometries.findClosestIntersection(ray, 15).getPoint(),
+                "Wrong closest point before the distance");
+        assertEquals(1, near.tests, "Nearest sphere must be tested");
+
+        // TC04: Distance before the first sphere
+        near.tests = 0;
+        assertNull(geometries.findClosestIntersection(ray, 5), "Hits beyond the distance must be ignored");
+        assertEquals(0, near.tests + middle.tests + far.tests, "Spheres beyond the distance must not be tested");
+
+        // =============== Boundary Values Tests ==================
+        // TC05: Distance equal to the distance of the nearest hit
+        assertNull(geometries.findClosestIntersection(ray, 9), "Hit at the distance must be ignored");
+        assertEquals(new Point(0, 0, 9), geometries.findClosestIntersection(ray, 9.5).getPoint(),
+                "Hit just before the distance must be found");
+
+        // TC06: Ray starting inside the nearest sphere finds its far side first
+        ray = new Ray(new Point(0, 0, 10), new Vector(0, 0, 1));
+        assertEquals(new Point(0, 0, 11), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+    }
+
+    /**
+     * Test method for {@link Geometries#findClosestIntersection(Ray)} on deeply nested collections,
+     * whose traversals share the stack of the thread (see {@link TraversalStack}).
+     */
+    @Test
+    void testFindClosestIntersectionDeepNesting() {
+        // Every level has three children, so the frames of the nested traversals outgrow the initial stack,
+        // and the nearest sphere is the deepest one
+        Geometries root = new Geometries(new Sphere(new Point(0, 0, 100), 1));
+        Geometries level = root;
+        for (int depth = 1; depth <= 40; ++depth) {
+            Geometries child = new Geometries(new Sphere(new Point(0, 0, 100 - depth), 0.5));
+            level.add(new Sphere(new Point(50, 50, 100 - depth), 1), child);
+            level = child;
+        }
+        Geometries flat = new Geometries(new Geometries(level.getShapes().getFirst()), new Sphere(new Point(0, 0, 80), 1));
+        flat.flatten();
+        level.add(new Sphere(new Point(50, 0, 0), 1), flat);
+        root.setBoundingBox();
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The nearest hit is found through all the levels and the flattened collection
+        assertEquals(new Point(0, 0, 59.5), root.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(ray.findClosestIntersection(root.calculateIntersections(ray)).getPoint(),
+                root.findClosestIntersection(ray).getPoint(), "Closest hit must agree with all the intersections");
+
+        // TC02: The stack of the thread is released after the query
+        assertEquals(0, TraversalStack.get().push(0), "Traversal stack must be empty after a query");
+    }
+
+    /**
+     * Test method for {@link Geometries#isOccluded(Ray, double)} and
+     * {@link Geometries#isOccluded(Ray, double, java.util.function.Consumer)},
+     * on a nested collection and on its flattened BVH.
+     */
+    @Test
+    void testIsOccluded() {
+        Material glass = new Material().setkT(0.5);
+        for (boolean flat : new boolean[]{false, true}) {
+            Geometries geometries = new Geometries();
+            for (int i = 0; i < 6; ++i)
+                geometries.add(new Sphere(new Point(i * 3, 10, 0), 1));
+            geometries.add(new Sphere(new Point(0, 0, 10), 1).setMaterial(glass));
+            geometries.add(new Sphere(new Point(0, 0, 30), 1));
+            new SAHBuilder().build(geometries);
+            if (flat) geometries.flatten();
+            Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+            List<Intersectable.Intersection> transparent = new LinkedList<>();
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Opaque blocker beyond the distance, a transparent one before it is reported
+            assertFalse(geometries.isOccluded(ray, 20, transparent::add), "Ray must not be occluded, flat " + flat);
+            assertEquals(2, transparent.size(), "Both sides of the glass sphere must be reported, flat " + flat);
+            assertEquals(new Point(0, 0, 9), transparent.getFirst().getPoint(), "Wrong transparent point, flat " + flat);
+
+            // TC02: Opaque blocker closer than the distance
+            assertTrue(geometries.isOccluded(ray, 40), "Ray must be occluded, flat " + flat);
+            assertEquals(0, TraversalStack.get().push(0), "Stopping at the blocker must release the stack, flat " + flat);
+
+            // TC03: Only the transparent blocker on the way
+            assertFalse(geometries.isOccluded(ray, 20), "Transparent sphere must not occlude, flat " + flat);
+
+            // =============== Boundary Values Tests ==================
+            // TC04: Distance just before the opaque blocker
+            assertFalse(geometries.isOccluded(ray, 29), "Hit at the distance must be ignored, flat " + flat);
+
+            // TC05: Distance inside the glass sphere - only its near side is reported
+            transparent.clear();
+            assertFalse(geometries.isOccluded(ray, 10, transparent::add), "Ray must not be occluded, flat " + flat);
+            assertEquals(1, transparent.size(), "Only the near side must be reported, flat " + flat);
+        }
+    }
+
+    /**
+     * Lists the nodes and the shapes of a hierarchy in depth-first order, with the depth of each.
+     *
+     * @param node   the root of the hierarchy
+     * @param depth  the depth of the root
+     * @param result output - the depths and the shapes (null for an inner collection)
+     */
+    private static void listTree(Geometries node, int depth, List<Object> result) {
+        for (Intersectable shape : node.getShapes()) {
+            result.add(depth);
+            if (shape instanceof Geometries child) {
+                result.add(null);
+                listTree(child, depth + 1, result);
+            } else result.add(shape);
+        }
+    }
+
+    /**
+     * Test method for the parallel build of {@link BVHBuilder#build(Geometries)} and {@link BVHBuilder#getBuildTime()}.
+     * Subtrees above the sequential cutoff are built in forked tasks, which must give exactly
+     * the same tree as a sequential build.
+     */
+    @Test
+    void testParallelBuild() {
+        java.util.Random random = new java.util.Random(3);
+        List<Intersectable> spheres = new LinkedList<>();
+        for (int i = 0; i < 5000; ++i)
+            spheres.add(new Sphere(new Point(random.nextDouble() * 100, random.nextDouble() * 100,
+                    random.nextDouble() * 100), random.nextDouble() + 0.1));
+
+        for (BVHBuilder builder : new BVHBuilder[]{new SAHBuilder(), new MedianBuilder()}) {
+            // =============== Boundary Values Tests ==================
+            // TC01: No build yet
+            assertEquals(0, builder.getBuildTime(), "Build time must be 0 before a build");
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC02: Parallel and sequential trees are the same
+            Geometries parallel = new Geometries();
+            spheres.forEach(parallel::add);
+            long start = System.nanoTime();
+            builder.build(parallel);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(builder.getBuildTime() >= 0 && builder.getBuildTime() <= elapsed, "Wrong build time");
+
+            Geometries sequential = new Geometries();
+            spheres.forEach(sequential::add);
+            builder.sequentialCutoff = Integer.MAX_VALUE;
+            builder.build(sequential);
+
+            List<Object> expected = new LinkedList<>();
+            List<Object> actual = new LinkedList<>();
+            listTree(sequential, 0, expected);
+            listTree(parallel, 0, actual);
+            assertEquals(expected.size(), actual.size(), "Wrong tree size, " + builder.getClass().getSimpleName());
+            for (int i = 0; i < expected.size(); ++i)
+                assertSame(expected.get(i), actual.get(i), "Trees differ at " + i + ", " + builder.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Test method for {@link Geometries#flatten()}.
+     * The compiled hierarchy must report exactly the same intersections as the nested one.
+     */
+    @Test
+    void testFlatten() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 8; ++i)
+            geometries.add(new Sphere(new Point(i * 3, 0, 10), 1));
+        geometries.add(new Triangle(new Point(-50, -50, 20), new Point(50, -50, 20), new Point(0, 50, 20)));
+        geometries.buildBVH();
+        geometries.flatten();
+        assertTrue(geometries.isFlattened(), "Collection must be flattened");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through one sphere and the triangle
+        Ray ray = new Ray(new Point(6, 0, 0), new Vector(0, 0, 1));
+        assertEquals(3, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+
+        // TC02: Ray along all the spheres
+        ray = new Ray(new Point(-5, 0, 10), new Vector(1, 0, 0));
+        assertEquals(16, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Adding a shape drops the compiled form
+        geometries.add(new Sphere(new Point(100, 0, 10), 1));
+        assertFalse(geometries.isFlattened(), "Adding a shape must drop the compiled form");
+    }
+
+    /**
+     * Test method for {@link Geometries#findClosestIntersections(Ray[])} with a flattened BVH.
+     */
+    @Test
+    void testFindClosestIntersectionsPacket() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j)
+                geometries.add(new Sphere(new Point(i * 3 - 15, j * 3 - 15, -50 - i - j), 1));
+        geometries.add(new Plane(new Point(0, 0, -100), new Vector(0, 0, 1)));
+        new SAHBuilder().build(geometries);
+        geometries.flatten();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Coherent packet of 8x8 rays from a common head gets the same hits as single rays
+        Ray[] rays = new Ray[64];
+        for (int i = 0; i < 64; ++i)
+            rays[i] = new Ray(Point.ZERO, new Vector((i % 8 - 4) * 0.05, (i / 8 - 4) * 0.05, -1));
+        Intersectable.Intersection[] intersections = geometries.findClosestIntersections(rays);
+        for (int i = 0; i < 64; ++i)
+            assertEquals(geometries.findClosestIntersection(rays[i]).getPoint(), intersections[i].getPoint(),
+                    "Wrong closest point of ray " + i);
+
+        // TC02: Packet of rays from different heads, some missing everything
+        rays = new Ray[]{
+                new Ray(new Point(-15, -15, 0), new Vector(0, 0, -1)),
+                new Ray(new Point(100, 100, 0), new Vector(0, 0, -1)),
+                new Ray(new Point(0, 0, -200), new Vector(0, 0, -1))};
+        intersections = geometries.findClosestIntersections(rays);
+        assertEquals(new Point(-15, -15, -49), intersections[0].getPoint(), "Wrong closest point");
+        assertEquals(new Point(100, 100, -100), intersections[1].getPoint(), "Wrong closest point");
+        assertNull(intersections[2], "Ray must miss");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Packet larger than a single traversal chunk
+        rays = new Ray[100];
+        for (int i = 0; i < 100; ++i)
+            rays[i] = new Ray(Point.ZERO, new Vector((i % 10 - 5) * 0.03, (i / 10 - 5) * 0.03, -1));
+        intersections = geometries.findClosestIntersections(rays);
+        for (int i = 0; i < 100; ++i)
+            assertEquals(geometries.findClosestIntersection(rays[i]).getPoint(), intersections[i].getPoint(),
+                    "Wrong closest point of ray " + i);
+    }
+
+    /**
+     * Test method for {@link Geometries#flatten(BVHLayout)} with the 4-wide layout.
+     */
+    @Test
+    void testFlattenWide() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 20; ++i)
+            geometries.add(new Sphere(new Point(i * 3, 0, 10), 1));
+        geometries.add(new Plane(new Point(0, 0, 30), new Vector(0, 0, 1)));
+        new SAHBuilder().build(geometries);
+        geometries.flatten(BVHLayout.WIDE);
+        assertTrue(geometries.isFlattened(), "Collection must be flattened");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through one sphere and the plane
+        Ray ray = new Ray(new Point(6, 0, 0), new Vector(0, 0, 1));
+        assertEquals(3, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+        assertEquals(new Point(6, 0, 9), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+
+        // TC02: Ray along all the spheres
+        ray = new Ray(new Point(-5, 0, 10), new Vector(1, 0, 0));
+        assertEquals(40, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray missing the spheres hits only the plane
+        ray = new Ray(new Point(6, 5, 0), new Vector(0, 0, 1));
+        assertEquals(1, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+
+        // TC04: Wide hierarchies nested through instances share the traversal stack of the thread
+        Geometries scene = new Geometries(new Instance(geometries, Transform.translation(new Vector(0, 100, 0))),
+                new Instance(geometries, Transform.translation(new Vector(0, 200, 0))),
+                new Sphere(new Point(0, 150, 10), 1));
+        new SAHBuilder().build(scene);
+        scene.flatten(BVHLayout.WIDE);
+        ray = new Ray(new Point(-5, 100, 10), new Vector(1, 0, 0));
+        assertEquals(40, scene.findIntersections(ray).size(), "Wrong number of intersections through the instance");
+        assertEquals(new Point(-1, 100, 10), scene.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertTrue(scene.isOccluded(ray, 10), "Ray must be occluded through the instance");
+        assertEquals(0, TraversalStack.get().push(0), "Traversal stack must be empty after the queries");
+    }
+
+    /**
+     * Test method for the packed triangle leaves of {@link Geometries#flatten(BVHLayout)} with the wide layout.
+     */
+    @Test
+    void testFlattenWideTriangles() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 30; ++i)
+            geometries.add(new Triangle(new Point(i * 3, 0, 10), new Point(i * 3 + 2, 0, 10), new Point(i * 3, 2, 10)));
+        geometries.add(new Sphere(new Point(0, 0, 20), 1));
+        new SAHBuilder().build(geometries);
+        geometries.flatten(BVHLayout.WIDE);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through one triangle and the sphere
+        Ray ray = new Ray(new Point(0.5, 0.5, 0), new Vector(0, 0, 1));
+        assertEquals(3, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+        assertEquals(new Point(0.5, 0.5, 10), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertTrue(geometries.isOccluded(ray, 11), "Triangle must occlude");
+
+        // TC02: Ray through the inside of a triangle far from the first one
+        ray = new Ray(new Point(60.5, 0.5, 0), new Vector(0, 0, 1));
+        assertEquals(new Point(60.5, 0.5, 10), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray through the gap between two triangles
+        ray = new Ray(new Point(2.5, 0.5, 0), new Vector(0, 0, 1));
+        assertNull(geometries.findIntersections(ray), "Ray must miss the triangles");
+        assertFalse(geometries.isOccluded(ray, 100), "Ray must not be occluded");
+
+        // TC04: Ray on the edge of a triangle
+        ray = new Ray(new Point(1, 1, 0), new Vector(0, 0, 1));
+        assertNull(geometries.findClosestIntersection(ray), "Edge must not be hit");
+    }
+
+    /**
+     * Test method for the Vector API kernel of the wide layout ({@link LaneKernel#VECTOR}).
+     * The kernel must give exactly the results of the scalar lane loops. Skipped when the JVM runs
+     * without the {@code jdk.incubator.vector} module.
+     */
+    @Test
+    void testVectorLaneKernel() {
+        LaneKernel kernel = LaneKernel.VECTOR;
+        assumeTrue(kernel != null, "Vector API kernel not available");
+        assertTrue(WideBVH.isVectorized(), "Wide hierarchy must use the vector kernel");
+        Random random = new Random(5);
+        double[] bounds = new double[6 * WideBVH.WIDTH];
+        float[] floatBounds = new float[bounds.length];
+        double[] data = new double[9 * TriangleBlocks.WIDTH];
+        double[][] expected = new double[3][TriangleBlocks.WIDTH];
+        double[][] actual = new double[3][TriangleBlocks.WIDTH];
+        for (int n = 0; n < 1000; ++n) {
+            for (int i = 0; i < WideBVH.WIDTH; ++i)
+                for (int c = 0; c < 3; ++c) {
+                    double lo = random.nextDouble() * 10 - 5;
+                    bounds[c * WideBVH.WIDTH + i] = lo;
+                    bounds[(c + 3) * WideBVH.WIDTH + i] = lo + random.nextDouble() * 4;
+                }
+            for (int i = 0; i < bounds.length; ++i) floatBounds[i] = (float) bounds[i];
+            for (int i = 0; i < data.length; ++i) data[i] = random.nextDouble() * 10 - 5;
+            // A degenerate triangle in the last lane, as in the unused lanes
+            for (int c = 3; c < 9; ++c) data[c * TriangleBlocks.WIDTH + TriangleBlocks.WIDTH - 1] = 0;
+
+            // Axis aligned directions give infinite inverse components and NaN on the slab planes
+            double dx = n % 5 == 0 ? 0 : random.nextDouble() - 0.5;
+            double dy = random.nextDouble() - 0.5, dz = random.nextDouble() - 0.5;
+            double ox = n % 7 == 0 ? bounds[0] : random.nextDouble() * 20 - 10;
+            double oy = random.nextDouble() * 20 - 10, oz = random.nextDouble() * 20 - 10;
+            double tMax = n % 3 == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * 20;
+            int w = WideBVH.WIDTH;
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Boxes in double precision
+            WideBVH.testLanes(bounds, 0, w, 2 * w, 3 * w, 4 * w, 5 * w, ox, oy, oz, 1 / dx, 1 / dy, 1 / dz,
+                    tMax, expected[0]);
+            kernel.testBoxes(bounds, 0, w, 2 * w, 3 * w, 4 * w, 5 * w, ox, oy, oz, 1 / dx, 1 / dy, 1 / dz,
+                    tMax, actual[0]);
+            assertArrayEquals(expected[0], actual[0], "Wrong box entries");
+
+            // TC02: Boxes in single precision, with the near and far planes swapped
+            WideBVH.testLanes(floatBounds, 3 * w, 4 * w, 5 * w, 0, w, 2 * w, ox, oy, oz, 1 / dx, 1 / dy, 1 / dz,
+                    tMax, expected[0]);
+            kernel.testBoxes(floatBounds, 3 * w, 4 * w, 5 * w, 0, w, 2 * w, ox, oy, oz, 1 / dx, 1 / dy, 1 / dz,
+                    tMax, actual[0]);
+            assertArrayEquals(expected[0], actual[0], "Wrong single precision box entries");
+
+            // TC03: Triangles
+            TriangleBlocks.intersectLanes(data, 0, ox, oy, oz, dx, dy, dz, expected[0], expected[1], expected[2]);
+            kernel.intersectTriangles(data, 0, ox, oy, oz, dx, dy, dz, actual[0], actual[1], actual[2]);
+            assertArrayEquals(expected[0], actual[0], "Wrong triangle distances");
+            assertArrayEquals(expected[1], actual[1], "Wrong triangle U coordinates");
+            assertArrayEquals(expected[2], actual[2], "Wrong triangle V coordinates");
+        }
+    }
+
+    /**
+     * Test method for {@link Geometries#flatten(BVHLayout, boolean)} with single precision bounds.
+     * The triangles lie on coordinates which are not exact floats, so bounds rounded to the nearest
+     * float would cut off the rays passing just inside their edges.
+     */
+    @Test
+    void testFlattenSinglePrecision() {
+        for (BVHLayout layout : BVHLayout.values()) {
+            Geometries geometries = new Geometries();
+            for (int i = 0; i < 20; ++i)
+                geometries.add(new Triangle(new Point(i + 0.1, 0.1, 10), new Point(i + 0.7, 0.1, 10),
+                        new Point(i + 0.1, 0.7, 10)));
+            new SAHBuilder().build(geometries);
+            geometries.flatten(layout, true);
+            assertTrue(geometries.isSinglePrecision(), "Collection must be flattened in single precision");
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Ray through the inside of a triangle
+            Ray ray = new Ray(new Point(7.3, 0.3, 0), new Vector(0, 0, 1));
+            assertEquals(new Point(7.3, 0.3, 10), geometries.findClosestIntersection(ray).getPoint(),
+                    "Wrong closest point, " + layout);
+
+            // =============== Boundary Values Tests ==================
+            // TC02: Ray just inside the lower corner of a triangle, below the nearest float of the bounds
+            ray = new Ray(new Point(0.1 + 1e-9, 0.1 + 1e-9, 0), new Vector(0, 0, 1));
+            assertEquals(1, geometries.findIntersections(ray).size(), "Wrong number of intersections, " + layout);
+            assertTrue(geometries.isOccluded(ray, 20), "Triangle must occlude, " + layout);
+
+            // TC03: Refitting keeps the precision
+            geometries.refit();
+            assertTrue(geometries.isSinglePrecision(), "Refit must keep single precision, " + layout);
+        }
+    }
+
+    /**
+     * Test method for {@link Geometries#refit()} and {@link BVHBuilder#update(Geometries)}.
+     */
+    @Test
+    void testRefit() {
+        Geometries sphere = new Geometries(new Sphere(Point.ZERO, 1));
+        Geometries geometries = new Geometries();
+        List<Instance> instances = new LinkedList<>();
+        for (int i = 0; i < 16; ++i) {
+            Instance instance = new Instance(sphere, Transform.translation(new Vector(i * 3 + 1, 0, 10)));
+            instances.add(instance);
+            geometries.add(instance);
+        }
+        SAHBuilder builder = new SAHBuilder();
+        builder.build(geometries);
+        geometries.flatten();
+        Ray ray = new Ray(new Point(1, 20, 0), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A slightly moved instance is found after the refit, without a rebuild
+        instances.getFirst().setTransform(Transform.translation(new Vector(1, 20, 10)));
+        assertNull(geometries.findIntersections(ray), "Stale boxes must cull the moved instance");
+        assertFalse(builder.update(geometries), "Small motion must only refit the tree");
+        assertTrue(geometries.isFlattened(), "Refit must keep the compiled form");
+        assertEquals(2, geometries.findIntersections(ray).size(), "Wrong number of intersections after refit");
+
+        // TC02: Shuffling the instances along the row degrades the tree, so it is rebuilt
+        for (int i = 0; i < 16; ++i)
+            instances.get(i).setTransform(Transform.translation(new Vector(((i * 7) % 16) * 3 + 1, 20, 10)));
+        assertTrue(builder.update(geometries), "Shuffled instances must trigger a rebuild");
+        assertTrue(geometries.isFlattened(), "Rebuild must keep the compiled form");
+        assertEquals(2, geometries.findIntersections(ray).size(), "Wrong number of intersections after rebuild");
+    }
+
+    /**
+     * Test method for {@link BVHBuilder#build(Geometries)} with unbounded shapes nested in groups.
+     */
+    @Test
+    void testUnboundedShapes() {
+        Geometries group = new Geometries();
+        for (int i = 0; i < 8; ++i)
+            group.add(new Sphere(new Point(i * 3, 0, 10), 1));
+        Plane floor = new Plane(new Point(0, 0, 20), new Vector(0, 0, 1));
+        group.add(floor);
+        Geometries geometries = new Geometries(group, new Sphere(new Point(0, 30, 10), 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A group with an unbounded shape has no box, so it is never culled
+        geometries.setBoundingBox();
+        assertNull(group.getBoundingBox(), "Group with a plane must not be bounded");
+        assertNull(geometries.getBoundingBox(), "Collection with a plane must not be bounded");
+
+        // TC02: The plane is pulled out of the group into the root, beside a bounded hierarchy
+        new SAHBuilder().build(geometries);
+        List<Intersectable> shapes = geometries.getShapes();
+        assertEquals(2, shapes.size(), "Root must hold the hierarchy and the plane");
+        assertSame(floor, shapes.getLast(), "Plane must be tested directly in the root");
+        assertNotNull(shapes.getFirst().getBoundingBox(), "Hierarchy of the finite shapes must be bounded");
+
+        // TC03: Rays through a sphere and the plane, and through the plane only
+        Ray ray = new Ray(new Point(6, 0, 0), new Vector(0, 0, 1));
+        assertEquals(3, geometries.findIntersections(ray).size(), "Wrong number of intersections");
+        ray = new Ray(new Point(50, 50, 0), new Vector(0, 0, 1));
+        assertEquals(1, geometries.findIntersections(ray).size(), "Unbounded shape must not be culled");
+    }
+}
@@ -0,0 +1,137 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link geometries.Instance} class.
+ */
+class InstanceTests {
+    private static final double DELTA = 0.000001;
+
+    /**
+     * Test method for {@link Instance#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        Geometries shared = new Geometries(new Sphere(Point.ZERO, 1));
+        Instance moved = new Instance(shared, Transform.translation(new Vector(10, 0, 0)));
+        Instance scaled = new Instance(shared, Transform.scaling(2).then(Transform.translation(new Vector(0, 10, 0))));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through the translated sphere
+        Ray ray = new Ray(new Point(10, 0, -5), new Vector(0, 0, 1));
+        var intersections = moved.calculateIntersections(ray);
+        assertEquals(2, intersections.size(), "Wrong number of intersections");
+        assertEquals(new Point(10, 0, -1), moved.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(shared.getShapes().getFirst(), intersections.getFirst().geometry, "Wrong geometry");
+
+        // TC02: Ray through the scaled sphere
+        ray = new Ray(new Point(0, 10, -5), new Vector(0, 0, 1));
+        assertEquals(new Point(0, 10, -2), scaled.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+
+        // TC03: Ray missing the instance
+        assertNull(moved.findIntersections(ray), "Ray must miss the translated sphere");
+
+        // =============== Boundary Values Tests ==================
+        // TC04: Distance limit is measured in world space even when scaled
+        assertNull(scaled.findClosestIntersection(ray, 2.9), "Hit beyond the distance limit");
+        assertNotNull(scaled.findClosestIntersection(ray, 3.1), "Hit before the distance limit is missed");
+        assertFalse(scaled.isOccluded(ray, 2.9), "Occluded beyond the distance limit");
+        assertTrue(scaled.isOccluded(ray, 3.1), "Not occluded before the distance limit");
+    }
+
+    /**
+     * Test method for {@link Instance#setBoundingBox()}.
+     */
+    @Test
+    void testBoundingBox() {
+        Geometries shared = new Geometries(new Sphere(Point.ZERO, 1));
+        Instance instance = new Instance(shared,
+                Transform.scaling(3, 1, 1).then(Transform.rotation(Vector.AXIS_Z, 90)));
+        instance.setBoundingBox();
+        BoundingBox box = instance.getBoundingBox();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The long X axis of the scaled box is rotated onto the Y axis
+        assertEquals(-1, box.minX, DELTA, "Wrong box X");
+        assertEquals(1, box.maxX, DELTA, "Wrong box X");
+        assertEquals(-3, box.minY, DELTA, "Wrong box Y");
+        assertEquals(3, box.maxY, DELTA, "Wrong box Y");
+    }
+
+    /**
+     * Test method for a BVH built over instances of a shared hierarchy.
+     */
+    @Test
+    void testTopLevelBVH() {
+        Geometries mesh = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            mesh.add(new Sphere(new Point(i * 3, 0, 0), 1));
+        new SAHBuilder().build(mesh);
+
+        Geometries scene = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            scene.add(new Instance(mesh, Transform.translation(new Vector(0, i * 5 + 1, 0))));
+        new SAHBuilder().build(scene);
+        scene.flatten(BVHLayout.WIDE);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray along the spheres of one instance
+        Ray ray = new Ray(new Point(-5, 16, 0), new Vector(1, 0, 0));
+        assertEquals(20, scene.findIntersections(ray).size(), "Wrong number of intersections");
+        assertEquals(new Point(-1, 16, 0), scene.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+
+        // TC02: Ray across all the instances
+        ray = new Ray(new Point(6, -5, 0), new Vector(0, 1, 0));
+        assertEquals(20, scene.findIntersections(ray).size(), "Wrong number of intersections");
+    }
+
+    /**
+     * Test method for instances nested in instances, each moving the ray into a scratch ray of the thread.
+     */
+    @Test
+    void testNestedInstances() {
+        Geometries shared = new Geometries(new Sphere(Point.ZERO, 1));
+        Geometries pair = new Geometries(new Instance(shared, Transform.translation(new Vector(0, 0, 5))),
+                new Instance(shared, Transform.translation(new Vector(0, 0, -5))));
+        Instance scene = new Instance(pair, Transform.scaling(2).then(Transform.translation(new Vector(10, 0, 0))));
+        scene.setBoundingBox();
+        Ray ray = new Ray(new Point(10, 0, -20), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Closest hit through two levels of instances, in world space
+        assertEquals(new Point(10, 0, -12), scene.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(4, scene.calculateIntersections(ray).size(), "Wrong number of intersections");
+        assertEquals(new Vector(0, 0, -1), scene.findClosestIntersection(ray).getNormal(), "Wrong normal");
+
+        // =============== Boundary Values Tests ==================
+        // TC02: Distance limit just before and after the nearest hit
+        assertNull(scene.findClosestIntersection(ray, 7.9), "Hit beyond the distance limit");
+        assertTrue(scene.isOccluded(ray, 8.1), "Not occluded before the distance limit");
+        assertFalse(scene.isOccluded(ray, 7.9), "Occluded beyond the distance limit");
+    }
+
+    /**
+     * Test method for {@link Transform#transformNormal(Vector)}.
+     */
+    @Test
+    void testTransformNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Normal of a slanted plane stays perpendicular to it after non-uniform scaling
+        Transform transform = Transform.scaling(2, 1, 1);
+        Vector normal = transform.transformNormal(new Vector(1, 1, 0).normalize());
+        Vector onPlane = transform.transformVector(new Vector(1, -1, 0));
+        assertEquals(0, normal.dotProduct(onPlane), DELTA, "Normal is not perpendicular");
+        assertEquals(1, normal.length(), DELTA, "Normal is not normalized");
+
+        // =============== Boundary Values Tests ==================
+        // TC02: Singular transformation
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(0), "Singular transformation");
+    }
+}
@@ -88,4 +88,44 @@ class PolygonTests {
             assertEquals(0d, result.dotProduct(pts[i].subtract(pts[i == 0 ? 3 : i - 1])), DELTA,
                     "Polygon's normal is not orthogonal to one of the edges");
     }
+
+    /** Test method for {@link geometries.Polygon#findIntersections(primitives.Ray)}. */
+    @Test
+    void testFindIntersections() {
+        // A square, and a pentagon with the vertices in the opposite orientation
+        Polygon square = new Polygon(new Point(0, 0, 0), new Point(2, 0, 0), new Point(2, 2, 0), new Point(0, 2, 0));
+        Polygon pentagon = new Polygon(new Point(0, 0, 0), new Point(0, 2, 0), new Point(1, 3, 0),
+                new Point(2, 2, 0), new Point(2, 0, 0));
+        Vector down = new Vector(0, 0, -1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Inside the polygon
+        assertEquals(List.of(new Point(1.5, 0.5, 0)), square.findIntersections(new Ray(new Point(1.5, 0.5, 1), down)),
+                "Wrong intersection inside the square");
+        assertEquals(List.of(new Point(1, 2.5, 0)), pentagon.findIntersections(new Ray(new Point(1, 2.5, 1), down)),
+                "Wrong intersection inside the pentagon");
+
+        // TC02: Outside against an edge
+        assertNull(square.findIntersections(new Ray(new Point(3, 1, 1), down)), "Ray outside against an edge");
+        assertNull(pentagon.findIntersections(new Ray(new Point(0.2, 2.9, 1), down)), "Ray outside against an edge");
+
+        // TC03: Outside against a vertex
+        assertNull(square.findIntersections(new Ray(new Point(3, 3, 1), down)), "Ray outside against a vertex");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: On an edge
+        assertNull(square.findIntersections(new Ray(new Point(1, 0, 1), down)), "Ray on an edge");
+
+        // TC11: On a vertex
+        assertNull(square.findIntersections(new Ray(new Point(2, 2, 1), down)), "Ray on a vertex");
+
+        // TC12: On the continuation of an edge
+        assertNull(square.findIntersections(new Ray(new Point(3, 0, 1), down)), "Ray on an edge continuation");
+
+        // TC13: Polygon of three vertices, which keeps its edge planes unlike a Triangle
+        Polygon triangle = new Polygon(new Point(0, 0, 0), new Point(2, 0, 0), new Point(0, 2, 0));
+        assertEquals(List.of(new Point(0.5, 0.5, 0)), triangle.findIntersections(new Ray(new Point(0.5, 0.5, 1), down)),
+                "Wrong intersection inside the three vertex polygon");
+        assertNull(triangle.findIntersections(new Ray(new Point(1.5, 1.5, 1), down)), "Ray outside the hypotenuse");
+    }
 }
@@ -0,0 +1,223 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link RegularGrid} class.
+ */
+class RegularGridTests {
+
+    /**
+     * Checks that the grid finds the same closest point as the plain collection.
+     *
+     * @param geometries the plain collection
+     * @param grid       the grid over the collection
+     * @param ray        the ray
+     */
+    private static void assertSameClosest(Geometries geometries, RegularGrid grid, Ray ray) {
+        Intersectable.Intersection expected = geometries.findClosestIntersection(ray);
+        Intersectable.Intersection actual = grid.findClosestIntersection(ray);
+        if (expected == null) assertNull(actual, "Ray must miss, " + ray);
+        else assertEquals(expected.getPoint(), actual.getPoint(), "Wrong closest point, " + ray);
+    }
+
+    /**
+     * Test method for {@link RegularGrid#findClosestIntersection(Ray)}.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Random random = new Random(7);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 200; ++i)
+            geometries.add(new Sphere(new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20,
+                    random.nextDouble() * 40 - 60), random.nextDouble() * 2 + 0.1));
+        for (int i = 0; i < 50; ++i) {
+            Point a = new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, -40 - random.nextDouble() * 20);
+            geometries.add(new Triangle(a, a.add(new Vector(3, 0, 1)), a.add(new Vector(0, 3, -1))));
+        }
+        RegularGrid grid = new RegularGrid(geometries);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Rays from the camera in front of the shapes get the same hits as the brute force search
+        for (int i = 0; i < 400; ++i)
+            assertSameClosest(geometries, grid,
+                    new Ray(Point.ZERO, new Vector((i % 20 - 10) * 0.04, (i / 20 - 10) * 0.04, -1)));
+
+        // TC02: Rays starting inside the grid, in all directions
+        for (int i = 0; i < 200; ++i)
+            assertSameClosest(geometries, grid, new Ray(new Point(0, 0, -40),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5)));
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray missing the grid
+        assertNull(grid.findClosestIntersection(new Ray(Point.ZERO, new Vector(0, 0, 1))), "Ray must miss the grid");
+
+        // TC04: Empty grid
+        assertNull(new RegularGrid(new Geometries()).findClosestIntersection(new Ray(Point.ZERO, new Vector(0, 0, 1))),
+                "Empty grid must not be hit");
+    }
+
+    /**
+     * Test method for the early exit of the cell walk of {@link RegularGrid#findClosestIntersection(Ray)}.
+     */
+    @Test
+    void testCellWalk() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A hit in the first cell stops the walk before the farther spheres are tested
+        Geometries row = new Geometries();
+        CountingSphere[] spheres = new CountingSphere[20];
+        for (int i = 0; i < spheres.length; ++i) row.add(spheres[i] = new CountingSphere(new Point(i * 3, 0, 0), 1));
+        RegularGrid grid = new RegularGrid(row);
+        assertEquals(new Point(-1, 0, 0),
+                grid.findClosestIntersection(new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0))).getPoint(),
+                "Wrong closest point");
+        assertEquals(1, spheres[0].tests, "First sphere must be tested once");
+        assertEquals(0, spheres[spheres.length - 1].tests, "Walk must stop before the last sphere");
+
+        // TC02: A hit of a shape spanning several cells, which lies in a later cell, does not stop the walk
+        // before a nearer shape of the next cells
+        Triangle slope = new Triangle(new Point(0, -5, 5), new Point(0, 5, 5), new Point(60, 0, -5));
+        Sphere sphere = new Sphere(new Point(20, 0, 0), 1);
+        grid = new RegularGrid(new Geometries(slope, sphere));
+        Ray ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+        assertEquals(new Point(19, 0, 0), grid.findClosestIntersection(ray).getPoint(), "Sphere must be found first");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Each sphere along the ray is tested once even though it spans several cells
+        grid = new RegularGrid(row);
+        assertEquals(40, grid.calculateIntersections(ray).size(), "Wrong number of intersections");
+        for (CountingSphere s : spheres) s.tests = 0;
+        grid.findClosestIntersection(new Ray(new Point(100, 0, 0), new Vector(-1, 0, 0)));
+        assertEquals(1, spheres[spheres.length - 1].tests, "Last sphere must be tested once");
+    }
+
+    /**
+     * Test method for {@link RegularGrid#isOccluded(Ray, double)}.
+     */
+    @Test
+    void testIsOccluded() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 20; ++i) geometries.add(new Sphere(new Point(i * 3, 0, 0), 1));
+        RegularGrid grid = new RegularGrid(geometries);
+        Ray ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Sphere closer than the distance
+        assertTrue(grid.isOccluded(ray, 10), "Ray must be occluded");
+
+        // TC02: Sphere farther than the distance
+        assertFalse(grid.isOccluded(ray, 3), "Ray must not be occluded");
+
+        // TC03: Ray missing all the spheres
+        assertFalse(grid.isOccluded(new Ray(new Point(-5, 5, 0), new Vector(1, 0, 0)), 100),
+                "Ray must not be occluded");
+
+        // =============== Boundary Values Tests ==================
+        // TC04: Ray starting between two spheres, blocked only by the next one
+        assertFalse(grid.isOccluded(new Ray(new Point(7.5, 0, 0), new Vector(1, 0, 0)), 0.4),
+                "Ray must not be occluded");
+        assertTrue(grid.isOccluded(new Ray(new Point(7.5, 0, 0), new Vector(1, 0, 0)), 0.6),
+                "Ray must be occluded");
+    }
+
+    /**
+     * Test method for {@link RegularGrid#findClosestIntersection(Ray)} and {@link RegularGrid#isOccluded(Ray, double)}
+     * with grids nested in instances inside a grid, each level walking its own cells.
+     */
+    @Test
+    void testNestedGrids() {
+        Geometries row = new Geometries();
+        for (int i = 0; i < 20; ++i) row.add(new Sphere(new Point(i * 3, 0, 0), 1));
+        Geometries shared = new Geometries(new RegularGrid(row));
+        Geometries scene = new Geometries();
+        for (int j = 0; j < 5; ++j) scene.add(new Instance(shared, Transform.translation(new Vector(0, j * 5 + 5, 0))));
+        RegularGrid grid = new RegularGrid(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray along a row of an inner grid hits its first sphere
+        Ray ray = new Ray(new Point(-5, 10, 0), new Vector(1, 0, 0));
+        assertEquals(new Point(-1, 10, 0), grid.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertTrue(grid.isOccluded(ray, 4.5), "Ray must be occluded");
+        assertFalse(grid.isOccluded(ray, 3.5), "Ray must not be occluded");
+
+        // TC02: Ray across the rows hits the nearest row first
+        ray = new Ray(new Point(6, -5, 0), new Vector(0, 1, 0));
+        assertEquals(new Point(6, 4, 0), grid.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertEquals(10, grid.findIntersections(ray).size(), "Wrong number of intersections");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray between the rows misses everything
+        assertNull(grid.findClosestIntersection(new Ray(new Point(-5, 2.5, 0), new Vector(1, 0, 0))),
+                "Ray must miss");
+    }
+
+    /**
+     * Test method for {@link RegularGrid#RegularGrid(Geometries)} with unbounded shapes nested in groups.
+     */
+    @Test
+    void testUnboundedShapes() {
+        Geometries group = new Geometries();
+        for (int i = 0; i < 8; ++i) group.add(new Sphere(new Point(i * 3, 0, 10), 1));
+        group.add(new Plane(new Point(0, 0, 20), new Vector(0, 0, 1)));
+        RegularGrid grid = new RegularGrid(new Geometries(group, new Sphere(new Point(0, 30, 10), 1)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A grid with an unbounded shape has no box, so it is never culled
+        assertNull(grid.getBoundingBox(), "Grid with a plane must not be bounded");
+
+        // TC02: Ray through a sphere and the plane
+        Ray ray = new Ray(new Point(6, 0, 0), new Vector(0, 0, 1));
+        assertEquals(3, grid.calculateIntersections(ray).size(), "Wrong number of intersections");
+        assertEquals(new Point(6, 0, 9), grid.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Ray missing the grid cells hits only the plane
+        ray = new Ray(new Point(50, 50, 0), new Vector(0, 0, 1));
+        assertEquals(new Point(50, 50, 20), grid.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertTrue(grid.isOccluded(ray, 30), "Plane must occlude");
+        assertFalse(grid.isOccluded(ray, 10), "Plane must not occlude");
+    }
+
+    /**
+     * Test method for the automatic resolution of {@link RegularGrid#RegularGrid(Geometries)}
+     * on a scene with a flat box.
+     */
+    @Test
+    void testFlatScene() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 30; ++i)
+            for (int j = 0; j < 30; ++j)
+                geometries.add(new Triangle(new Point(i, j, 10), new Point(i + 0.8, j, 10), new Point(i, j + 0.8, 10)));
+        RegularGrid grid = new RegularGrid(geometries);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Rays through the plane of the triangles get the same hits as the brute force search
+        for (int i = 0; i < 30; ++i)
+            for (int j = 0; j < 30; ++j)
+                assertSameClosest(geometries, grid, new Ray(new Point(i + 0.3, j + 0.1 * (i % 10), 0),
+                        new Vector(0.01 * (j % 5), 0, 1)));
+
+        // =============== Boundary Values Tests ==================
+        // TC02: Ray parallel to the flat grid, inside it
+        assertNull(grid.findClosestIntersection(new Ray(new Point(-1, 0.3, 10), new Vector(1, 0, 0))),
+                "Ray in the plane of the triangles must not hit them");
+
+        // TC03: Ray parallel to the flat grid, outside it
+        assertNull(grid.findClosestIntersection(new Ray(new Point(-1, 0.3, 11), new Vector(1, 0, 0))),
+                "Ray above the triangles must miss the grid");
+
+        // TC04: Single shape
+        grid = new RegularGrid(new Geometries(new Triangle(new Point(0, 0, 10), new Point(1, 0, 10), new Point(0, 1, 10))));
+        assertEquals(new Point(0.2, 0.2, 10),
+                grid.findClosestIntersection(new Ray(new Point(0.2, 0.2, 0), new Vector(0, 0, 1))).getPoint(),
+                "Wrong closest point");
+    }
+}
@@ -0,0 +1,157 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link geometries.TriangleMesh} class.
+ */
+class TriangleMeshTests {
+    /**
+     * A unit square in the XY plane, made of two triangles sharing the diagonal.
+     */
+    private static final double[] SQUARE_VERTICES = {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0};
+    /**
+     * The triangles of the square.
+     */
+    private static final int[] SQUARE_INDICES = {0, 1, 2, 0, 2, 3};
+
+    /**
+     * Test method for {@link TriangleMesh#TriangleMesh(double[], int[])}.
+     */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Correct mesh
+        TriangleMesh mesh = new TriangleMesh(SQUARE_VERTICES, SQUARE_INDICES);
+        assertEquals(2, mesh.getFaceCount(), "Wrong amount of faces");
+        assertEquals(new Point(1, 1, 0), mesh.getVertex(2), "Wrong vertex");
+
+        // TC02: Index out of range
+        assertThrows(IllegalArgumentException.class,
+                () -> new TriangleMesh(SQUARE_VERTICES, new int[]{0, 1, 4}), "Index out of range");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Vertex buffer not made of triples
+        assertThrows(IllegalArgumentException.class,
+                () -> new TriangleMesh(new double[]{0, 0, 0, 1}, new int[]{}), "Partial vertex");
+
+        // TC04: Index buffer not made of triples
+        assertThrows(IllegalArgumentException.class,
+                () -> new TriangleMesh(SQUARE_VERTICES, new int[]{0, 1}), "Partial triangle");
+
+        // TC05: Degenerate triangle
+        assertThrows(IllegalArgumentException.class,
+                () -> new TriangleMesh(SQUARE_VERTICES, new int[]{0, 1, 1}), "Degenerate triangle");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        TriangleMesh mesh = new TriangleMesh(SQUARE_VERTICES, SQUARE_INDICES);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through the first triangle
+        Ray ray = new Ray(new Point(0.75, 0.25, -1), new Vector(0, 0, 1));
+        assertEquals(List.of(new Point(0.75, 0.25, 0)), mesh.findIntersections(ray), "Wrong intersection");
+
+        // TC02: Ray through the second triangle, with the normal of the square
+        ray = new Ray(new Point(0.25, 0.75, -1), new Vector(0, 0, 1));
+        Intersectable.Intersection intersection = mesh.findClosestIntersection(ray);
+        assertEquals(new Point(0.25, 0.75, 0), intersection.getPoint(), "Wrong intersection");
+        assertEquals(new Vector(0, 0, 1), intersection.geometry.getNormal(intersection.getPoint()), "Wrong normal");
+
+        // TC03: Ray outside the square
+        ray = new Ray(new Point(1.5, 0.5, -1), new Vector(0, 0, 1));
+        assertNull(mesh.findIntersections(ray), "Ray must miss the square");
+
+        // =============== Boundary Values Tests ==================
+        // TC04: Ray on the shared edge of the two triangles
+        ray = new Ray(new Point(0.5, 0.5, -1), new Vector(0, 0, 1));
+        assertNull(mesh.findIntersections(ray), "Edge must not be hit");
+    }
+
+    /**
+     * Test method for the box test of the faces, calculated without creating their boxes.
+     */
+    @Test
+    void testEntryDistance() {
+        TriangleMesh mesh = new TriangleMesh(new double[]{0, 0, 5, 1, 0, 6, 0, 1, 7}, new int[]{0, 1, 2});
+        Intersectable face = mesh.getShapes().getFirst();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray entering the box of the face, the same as the box created from the vertices
+        Ray ray = new Ray(new Point(0.2, 0.2, 0), new Vector(0, 0, 1));
+        assertEquals(face.getBoundingBox().entryDistance(ray), face.entryDistance(ray, 0, Double.POSITIVE_INFINITY),
+                0.000001, "Wrong entry distance");
+        assertEquals(5, face.entryDistance(ray, 0, Double.POSITIVE_INFINITY), 0.000001, "Wrong entry distance");
+
+        // TC02: Ray missing the box
+        ray = new Ray(new Point(2, 0.2, 0), new Vector(0, 0, 1));
+        assertEquals(Double.POSITIVE_INFINITY, face.entryDistance(ray, 0, Double.POSITIVE_INFINITY), "Box must be missed");
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Box beyond the end of the range
+        ray = new Ray(new Point(0.2, 0.2, 0), new Vector(0, 0, 1));
+        assertEquals(Double.POSITIVE_INFINITY, face.entryDistance(ray, 0, 4), "Box beyond the range must be missed");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#TriangleMesh(float[], int[])}.
+     */
+    @Test
+    void testFloatVertices() {
+        TriangleMesh mesh = new TriangleMesh(new float[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0}, SQUARE_INDICES);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Vertices and hits are the same as with a double buffer
+        assertEquals(new Point(1, 1, 0), mesh.getVertex(2), "Wrong vertex");
+        Ray ray = new Ray(new Point(0.25, 0.75, -1), new Vector(0, 0, 1));
+        assertEquals(List.of(new Point(0.25, 0.75, 0)), mesh.findIntersections(ray), "Wrong intersection");
+
+        // =============== Boundary Values Tests ==================
+        // TC02: Vertex buffer not made of triples
+        assertThrows(IllegalArgumentException.class,
+                () -> new TriangleMesh(new float[]{0, 0, 0, 1}, new int[]{}), "Partial vertex");
+    }
+
+    /**
+     * Test method for a BVH built over the faces of a mesh.
+     */
+    @Test
+    void testBVH() {
+        // A strip of 20 squares along the X axis
+        double[] vertices = new double[21 * 2 * 3];
+        int[] indices = new int[20 * 6];
+        for (int i = 0; i <= 20; ++i) {
+            vertices[i * 6] = i;
+            vertices[i * 6 + 3] = i;
+            vertices[i * 6 + 4] = 1;
+        }
+        for (int i = 0; i < 20; ++i) {
+            int a = i * 2, b = i * 2 + 2, c = i * 2 + 3, d = i * 2 + 1;
+            System.arraycopy(new int[]{a, b, c, a, c, d}, 0, indices, i * 6, 6);
+        }
+        Geometries geometries = new Geometries(new TriangleMesh(vertices, indices));
+        new SAHBuilder().build(geometries);
+        geometries.flatten(BVHLayout.WIDE);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through one square of the strip
+        Ray ray = new Ray(new Point(12.75, 0.25, 5), new Vector(0, 0, -1));
+        assertEquals(new Point(12.75, 0.25, 0), geometries.findClosestIntersection(ray).getPoint(), "Wrong closest point");
+        assertTrue(geometries.isOccluded(ray, 6), "Mesh must occlude");
+
+        // TC02: Ray beside the strip
+        ray = new Ray(new Point(12.75, 1.25, 5), new Vector(0, 0, -1));
+        assertNull(geometries.findIntersections(ray), "Ray must miss the strip");
+    }
+}
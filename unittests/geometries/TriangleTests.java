@@ -88,4 +88,27 @@ class TriangleTests {
         );
     }
 
-}
\ No newline at end of file
+    /**
+     * Test method for {@link Triangle#intersect(Ray, HitRecord)}.
+     */
+    @Test
+    void testIntersectHitRecord() {
+        Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0));
+        Ray ray = new Ray(new Point(0.25, 0.5, -2), new Vector(0, 0, 1));
+        HitRecord hit = new HitRecord().reset(Double.POSITIVE_INFINITY);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Hit records the distance, the geometry and the barycentric coordinates
+        assertTrue(triangle.intersect(ray, hit), "Ray should hit the triangle");
+        assertEquals(2, hit.t, 0.000001, "Wrong hit distance");
+        assertSame(triangle, hit.geometry, "Wrong hit geometry");
+        assertEquals(0.25, hit.u, 0.000001, "Wrong barycentric u");
+        assertEquals(0.5, hit.v, 0.000001, "Wrong barycentric v");
+
+        // =============== Boundary Values Tests ==================
+        // TC02: A farther hit does not replace a closer one
+        hit.reset(1);
+        assertFalse(triangle.intersect(ray, hit), "Farther hit must not be recorded");
+        assertNull(hit.geometry, "Record must stay empty");
+    }
+}
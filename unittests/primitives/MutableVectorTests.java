@@ -0,0 +1,118 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MutableVector class.
+ */
+class MutableVectorTests {
+    private static final double DELTA = 0.000001;
+    private final Point p123 = new Point(1, 2, 3);
+    private final Point p03M2 = new Point(0, 3, -2);
+
+    /**
+     * Test method for {@link primitives.MutableVector#setDifference(Point, Point)}.
+     */
+    @Test
+    void testSetDifference() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Difference of two points
+        MutableVector v = new MutableVector().setDifference(p123, p03M2);
+        assertEquals(new Vector(1, -1, 5), v.toVector(), "setDifference() wrong result");
+
+        // TC02: The previous components are replaced
+        v.setDifference(p03M2, p123);
+        assertEquals(new Vector(-1, 1, -5), v.toVector(), "setDifference() must replace the components");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Difference of a point with itself is the zero vector
+        v.setDifference(p123, p123);
+        assertEquals(0, v.lengthSquared(), DELTA, "setDifference() of equal points must be zero");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#addScaled(Point, double)}.
+     */
+    @Test
+    void testAddScaled() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Add a scaled vector
+        MutableVector v = new MutableVector(p123).addScaled(new Vector(1, 0, -1), 2);
+        assertEquals(new Point(3, 2, 1), v.toPoint(), "addScaled() wrong result");
+
+        // TC02: Add a negatively scaled point
+        v.addScaled(p03M2, -1);
+        assertEquals(new Point(3, -1, 3), v.toPoint(), "addScaled() wrong result for a negative scale");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Zero scale leaves the vector unchanged
+        v.addScaled(p123, 0);
+        assertEquals(new Point(3, -1, 3), v.toPoint(), "addScaled() with zero scale must not change the vector");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#normalize()}.
+     */
+    @Test
+    void testNormalize() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Normalized vector is a unit vector in the same direction
+        MutableVector v = new MutableVector(p123);
+        assertSame(v, v.normalize(), "normalize() must work in place");
+        assertEquals(1, v.lengthSquared(), DELTA, "normalize() result is not a unit vector");
+        assertEquals(new Vector(1, 2, 3).normalize(), v.toVector(), "normalize() wrong direction");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Zero vector
+        assertThrows(IllegalArgumentException.class, () -> new MutableVector().normalize(),
+                "normalize() of the zero vector must throw an exception");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#dotProduct(MutableVector)}
+     * and {@link primitives.MutableVector#dotProduct(Vector)}.
+     */
+    @Test
+    void testDotProduct() {
+        MutableVector v = new MutableVector(p123);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Dot product with a scratch vector
+        assertEquals(-4, v.dotProduct(new MutableVector().set(1, -1, -1)), DELTA, "dotProduct() wrong value");
+
+        // TC02: Dot product with a vector
+        assertEquals(-4, v.dotProduct(new Vector(1, -1, -1)), DELTA, "dotProduct() wrong value");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Orthogonal vectors
+        assertEquals(0, v.dotProduct(new Vector(0, 3, -2)), DELTA, "dotProduct() for orthogonal vectors is not zero");
+
+        // TC11: Zero scratch vector
+        assertEquals(0, new MutableVector().dotProduct(v), DELTA, "dotProduct() with the zero vector is not zero");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableVector#toPoint()} and {@link primitives.MutableVector#toVector()}.
+     */
+    @Test
+    void testToPointToVector() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Conversion of a non-zero vector
+        MutableVector v = new MutableVector(p123);
+        assertEquals(p123, v.toPoint(), "toPoint() wrong result");
+        assertEquals(new Vector(1, 2, 3), v.toVector(), "toVector() wrong result");
+
+        // TC02: The converted objects do not follow later changes
+        Point point = v.toPoint();
+        v.set(4, 5, 6);
+        assertEquals(p123, point, "toPoint() result must not change with the scratch vector");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Zero vector converts to the origin, but not to a vector
+        v.set(0, 0, 0);
+        assertEquals(Point.ZERO, v.toPoint(), "toPoint() of the zero vector must be the origin");
+        assertThrows(IllegalArgumentException.class, v::toVector, "toVector() of the zero vector must throw an exception");
+    }
+}
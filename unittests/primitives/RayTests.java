@@ -1,5 +1,7 @@
 package primitives;
 
+import geometries.Intersectable.Intersection;
+import geometries.Sphere;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -91,4 +93,74 @@ class RayTests {
         assertEquals(new Point(1, 0, 0), ray.findClosestPoint(points4), "TC04: The last point is the closest");
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link primitives.Ray#findClosestIntersection(List)} with intersections
+     * found along the ray, whose points are calculated only on demand.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(1, 0, 0));
+        Sphere sphere = new Sphere(new Point(4, 0, 0), 1);
+
+        // ============ Equivalence Partition Test (EP) ==============
+        // TC01: Intersections by distance along the ray - the closest one, with its point and normal
+        Intersection closest = ray.findClosestIntersection(List.of(
+                new Intersection(sphere, ray, 5), new Intersection(sphere, ray, 3)));
+        assertEquals(3, closest.distance(ray), "TC01: Wrong distance");
+        assertEquals(new Point(3, 0, 0), closest.getPoint(), "TC01: Wrong point");
+        assertEquals(new Vector(-1, 0, 0), closest.getNormal(), "TC01: Wrong normal");
+        assertSame(sphere.getMaterial(), closest.getMaterial(), "TC01: Wrong material");
+
+        // =============== Boundary Values Tests (BVA) ==================
+        // TC02: Intersection with a known point measured from another ray
+        Ray other = new Ray(new Point(0, 0, -4), new Vector(0, 0, 1));
+        assertEquals(5, closest.distance(other), 0.000001, "TC02: Wrong distance");
+    }
+
+    /**
+     * Test method for the cached inverse direction and sign flags of {@link Ray}.
+     */
+    @Test
+    void testInverseDirection() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Inverse components and signs of a slanted direction
+        Ray ray = new Ray(new Point(1, 2, 3), new Vector(3, -4, 0).scale(2));
+        assertEquals(1 / 0.6, ray.getInvDirX(), 0.000001, "TC01: Wrong inverse X");
+        assertEquals(1 / -0.8, ray.getInvDirY(), 0.000001, "TC01: Wrong inverse Y");
+        assertEquals(0, ray.getSignX(), "TC01: Wrong sign X");
+        assertEquals(1, ray.getSignY(), "TC01: Wrong sign Y");
+
+        // =============== Boundary Values Tests (BVA) ==================
+        // TC02: Zero component gives an infinite inverse
+        assertEquals(Double.POSITIVE_INFINITY, ray.getInvDirZ(), "TC02: Inverse of zero must be infinite");
+        assertEquals(0, ray.getSignZ(), "TC02: Wrong sign Z");
+    }
+
+    /**
+     * Test method for the head and direction coordinates of {@link Ray} and of a {@link ScratchRay}.
+     */
+    @Test
+    void testCoordinates() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Coordinates of a ray match its head and its normalized direction
+        Ray ray = new Ray(new Point(1, 2, 3), new Vector(0, 3, 4));
+        assertEquals(new Point(ray.getHeadX(), ray.getHeadY(), ray.getHeadZ()), ray.getHead(), "TC01: Wrong head");
+        assertEquals(new Vector(0, 0.6, 0.8), new Vector(ray.getDirX(), ray.getDirY(), ray.getDirZ()),
+                "TC01: Wrong direction");
+
+        // TC02: A scratch ray moved by a transformation equals the ray constructed from the moved head and direction
+        Transform transform = Transform.scaling(2).then(Transform.translation(new Vector(10, 0, 0)));
+        ScratchRay scratch = new ScratchRay();
+        double scale = transform.inverseRay(ray, scratch);
+        assertEquals(new Ray(transform.inversePoint(ray.getHead()), transform.inverseVector(ray.getDirection())),
+                scratch, "TC02: Wrong moved ray");
+        assertEquals(0.5, scale, 0.000001, "TC02: Wrong distance scale");
+        assertEquals(1 / scratch.getDirY(), scratch.getInvDirY(), 0.000001, "TC02: Wrong cached inverse");
+
+        // TC03: Moving the scratch ray again replaces its head and direction
+        transform.inverseRay(new Ray(new Point(10, 0, 0), new Vector(1, 0, 0)), scratch);
+        assertEquals(Point.ZERO, scratch.getHead(), "TC03: Wrong head after moving again");
+        assertEquals(new Vector(1, 0, 0), scratch.getDirection(), "TC03: Wrong direction after moving again");
+    }
+}
@@ -1,11 +1,21 @@
 package renderer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import geometries.*;
+import lighting.*;
 import primitives.*;
+import scene.Scene;
 
 /**
  * Testing Camera Class
@@ -18,6 +28,56 @@ class CameraTests {
            .setVpDistance(10);
    /** Assert failure message for a bad ray */
    private static final String  BAD_RAY       = "Bad ray";
+   /** Scene of the rendering tests */
+   private static final Scene   SCENE         = createScene();
+
+   /**
+    * Creates the scene of the rendering tests - spheres above a floor, lit by a point light
+    * @return the scene
+    */
+   private static Scene createScene() {
+      Scene    scene    = new Scene("Camera scene").setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+      Material material = new Material().setKD(0.5).setKS(0.5).setShininess(30);
+      for (int i = 0; i < 4; ++i)
+         for (int j = 0; j < 3; ++j)
+            scene.geometries.add(new Sphere(new Point(i * 14 - 21, j * 14 - 14, -20), 6)
+               .setEmission(new Color(30 * i, 20 * j, 100)).setMaterial(material));
+      scene.geometries.add(new Plane(new Point(0, 0, -40), Vector.AXIS_Z)
+         .setEmission(new Color(40, 40, 40)).setMaterial(material));
+      scene.lights.add(new PointLight(new Color(500, 400, 300), new Point(30, 40, 60)).setKl(1E-5).setKq(1E-6));
+      return scene;
+   }
+
+   /**
+    * Creates a builder of a camera rendering the scene of the rendering tests, with a resolution
+    * which is not a multiple of the tile sizes of the tests, so the tiles on the edges are partial
+    * @return the camera builder
+    */
+   private static Camera.Builder renderBuilder() {
+      return Camera.getBuilder()
+         .setLocation(new Point(0, 0, 100))
+         .setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+         .setVpDistance(100)
+         .setVpSize(70, 56)
+         .setResolution(75, 61)
+         .setRayTracer(SCENE, RayTracerType.SIMPLE);
+   }
+
+   /**
+    * Checks that two cameras rendered the same image
+    * @param expected the camera of the reference image
+    * @param actual   the camera of the tested image
+    * @param message  the failure message
+    */
+   private static void assertSameImage(Camera expected, Camera actual, String message) {
+      ImageWriter expectedImage = expected.getImageWriter();
+      ImageWriter actualImage   = actual.getImageWriter();
+      for (int y = 0; y < expectedImage.nY(); ++y)
+         for (int x = 0; x < expectedImage.nX(); ++x)
+            if (expectedImage.getPixel(x, y) != actualImage.getPixel(x, y))
+               assertEquals(expectedImage.getPixel(x, y), actualImage.getPixel(x, y),
+                            message + ", pixel (" + x + ", " + y + ")");
+   }
 
    /**
     * Test method for
@@ -88,4 +148,167 @@ class CameraTests {
       // BV01: set to a target on Y-axis without up
       assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
    }
+
+   /**
+    * Test method for {@link renderer.Camera#renderImage()} by tiles ({@link Camera.Builder#setTileSize(int)}).
+    */
+   @Test
+   void testRenderImageTiles() {
+      Camera expected = renderBuilder().build().renderImage();
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: Tiles on several threads, with partial tiles on the right and bottom edges
+      assertSameImage(expected, renderBuilder().setMultithreading(3).setTileSize(16).build().renderImage(),
+                      "Wrong tiles image");
+
+      // EP02: Tiles traced in packets, in Hilbert order
+      assertSameImage(expected, renderBuilder().setMultithreading(2).setTileSize(16).setPacketSize(4)
+         .setPixelOrder(PixelOrder.HILBERT).build().renderImage(), "Wrong tiles image with packets");
+
+      // =============== Boundary Values Tests ==================
+      // BV01: Threads count -1, a thread per core
+      assertSameImage(expected, renderBuilder().setMultithreading(-1).setTileSize(16).build().renderImage(),
+                      "Wrong tiles image, threads -1");
+
+      // BV02: Single tile bigger than the image
+      assertSameImage(expected, renderBuilder().setMultithreading(2).setTileSize(128).build().renderImage(),
+                      "Wrong image of a single tile");
+
+      // BV03: Tiles of a single pixel
+      assertSameImage(expected, renderBuilder().setMultithreading(2).setTileSize(1).build().renderImage(),
+                      "Wrong image of single pixel tiles");
+   }
+
+   /**
+    * Test method for {@link renderer.Camera#renderImage()} by virtual threads
+    * ({@link Camera.Builder#setVirtualThreads(boolean)}).
+    */
+   @Test
+   void testRenderImageVirtualThreads() throws Exception {
+      Camera expected = renderBuilder().build().renderImage();
+      int    permits  = Camera.RENDER_PERMITS.availablePermits();
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: A virtual thread per row
+      assertSameImage(expected, renderBuilder().setVirtualThreads(true).build().renderImage(),
+                      "Wrong image of virtual threads per row");
+
+      // EP02: A virtual thread per tile, traced in packets
+      assertSameImage(expected, renderBuilder().setVirtualThreads(true).setTileSize(16).setPacketSize(4).build()
+         .renderImage(), "Wrong image of virtual threads per tile");
+
+      // EP03: Two cameras rendering concurrently share the permits, and return all of them
+      Camera first  = renderBuilder().setVirtualThreads(true).build();
+      Camera second = renderBuilder().setVirtualThreads(true).setTileSize(8).build();
+      Thread thread = new Thread(first::renderImage);
+      thread.start();
+      second.renderImage();
+      thread.join();
+      assertSameImage(expected, first, "Wrong image of the first concurrent camera");
+      assertSameImage(expected, second, "Wrong image of the second concurrent camera");
+      assertEquals(permits, Camera.RENDER_PERMITS.availablePermits(), "All the permits must be released");
+
+      // =============== Boundary Values Tests ==================
+      // BV01: Virtual threads override the threads count
+      assertSameImage(expected, renderBuilder().setMultithreading(3).setVirtualThreads(true).build().renderImage(),
+                      "Wrong image of virtual threads with a threads count");
+   }
+
+   /**
+    * Renders with progress printing, capturing the printed progress
+    * @param  camera the camera to render by
+    * @return        the printed progress percentages, the last one last
+    */
+   private static String[] renderPrinting(Camera camera) {
+      PrintStream           out    = System.out;
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(output, true));
+      try {
+         camera.renderImage();
+      } finally {
+         System.setOut(out);
+      }
+      return output.toString().trim().split("\\s+");
+   }
+
+   /**
+    * Test method for the progress printing of {@link renderer.Camera#renderImage()}
+    * ({@link Camera.Builder#setDebugPrint(double)}).
+    */
+   @Test
+   void testDebugPrint() {
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: The reporter thread is stopped when the rendering returns, after printing 100%,
+      // single threaded, by threads, by tiles and by virtual threads
+      Camera.Builder[] builders = { renderBuilder(), renderBuilder().setMultithreading(3),
+         renderBuilder().setMultithreading(2).setTileSize(16), renderBuilder().setVirtualThreads(true) };
+      for (Camera.Builder builder : builders) {
+         String[] progress = renderPrinting(builder.setDebugPrint(0.1).build());
+         assertTrue(progress[progress.length - 1].matches("100[.,]0%"),
+                    "Wrong final progress " + progress[progress.length - 1]);
+         assertFalse(Thread.getAllStackTraces().keySet().stream()
+            .anyMatch(thread -> thread.getName().equals("progress-reporter")),
+                     "Reporter thread must be stopped");
+      }
+
+      // =============== Boundary Values Tests ==================
+      // BV01: No printing, no reporter thread
+      assertEquals("", renderPrinting(renderBuilder().build())[0], "Nothing must be printed");
+   }
+
+   /**
+    * Test method for {@link renderer.Camera#getBVHBuildTime()} and the printing of the BVH build time.
+    */
+   @Test
+   void testBVHBuildTime() {
+      PrintStream out = System.out;
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      Camera camera;
+      System.setOut(new PrintStream(output, true));
+      try {
+         // ============ Equivalence Partitions Tests ==============
+         // EP01: The build time is printed by build() even when debug printing is enabled after the BVH
+         Scene scene = createScene();
+         camera = renderBuilder().enableBVH(scene).setDebugPrint(0.1).build();
+      } finally {
+         System.setOut(out);
+      }
+      assertTrue(output.toString().startsWith("BVH build time: "), "Build time must be printed");
+      assertTrue(camera.getBVHBuildTime() >= 0, "Wrong build time");
+
+      // =============== Boundary Values Tests ==================
+      // BV01: No BVH, no build time
+      assertEquals(-1, renderBuilder().build().getBVHBuildTime(), "No build time expected without BVH");
+   }
+
+   /**
+    * Test method for {@link renderer.Camera#renderImageProgressive(java.util.function.IntConsumer)}.
+    */
+   @Test
+   void testRenderImageProgressive() {
+      Camera expected = renderBuilder().build().renderImage();
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: Every pass halves the blocks, and the last pass gives the image of a normal render,
+      // single threaded, by a parallel stream, by threads and by virtual threads
+      for (int threads : new int[] { 0, -1, 3 }) {
+         List<Integer> passes = new ArrayList<>();
+         Camera        camera = renderBuilder().setMultithreading(threads).build().renderImageProgressive(passes::add);
+         assertEquals(List.of(16, 8, 4, 2, 1), passes, "Wrong passes, threads " + threads);
+         assertSameImage(expected, camera, "Wrong progressive image, threads " + threads);
+      }
+      List<Integer> passes = new ArrayList<>();
+      Camera        camera = renderBuilder().setVirtualThreads(true).build().renderImageProgressive(passes::add);
+      assertEquals(List.of(16, 8, 4, 2, 1), passes, "Wrong passes, virtual threads");
+      assertSameImage(expected, camera, "Wrong progressive image, virtual threads");
+
+      // =============== Boundary Values Tests ==================
+      // BV01: Image smaller than the block of the first pass
+      camera = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+         .setVpDistance(100).setVpSize(70, 56).setResolution(5, 3).setRayTracer(SCENE, RayTracerType.SIMPLE)
+         .setMultithreading(2).build().renderImageProgressive(null);
+      assertSameImage(Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Vector(0, 0, -1), Vector.AXIS_Y)
+         .setVpDistance(100).setVpSize(70, 56).setResolution(5, 3).setRayTracer(SCENE, RayTracerType.SIMPLE)
+         .build().renderImage(), camera, "Wrong progressive image of a small image");
+   }
 }
@@ -0,0 +1,71 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Unit tests for the {@link GridRayTracer} class.
+ */
+class GridRayTracerTests {
+   /**
+    * Creates a scene with opaque and transparent spheres above a floor, lit by a point light.
+    * @return the scene
+    */
+   private static Scene createScene() {
+      Scene scene = new Scene("Grid scene").setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+      Material material = new Material().setKD(0.5).setKS(0.5).setShininess(30);
+      for (int i = 0; i < 5; ++i)
+         for (int j = 0; j < 5; ++j)
+            scene.geometries.add(new Sphere(new Point(i * 30 - 60, j * 30 - 60, -100), 10)
+               .setEmission(new Color(0, 0, 100))
+               .setMaterial((i + j) % 3 == 0 ? new Material().setKD(0.2).setkT(0.6) : material));
+      scene.geometries.add(new Plane(new Point(0, 0, -150), Vector.AXIS_Z)
+         .setEmission(new Color(50, 50, 50)).setMaterial(material));
+      scene.lights.add(new PointLight(new Color(500, 400, 300), new Point(40, 60, 100)).setKl(1E-5).setKq(1E-6));
+      return scene;
+   }
+
+   /**
+    * Test method for {@link GridRayTracer#traceRay(Ray)}.
+    */
+   @Test
+   void testTraceRay() {
+      Scene scene = createScene();
+      SimpleRayTracer simple = new SimpleRayTracer(scene);
+      GridRayTracer grid = new GridRayTracer(scene);
+
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: Rays through the spheres, their shadows and the floor get the same colors as the plain tracer
+      for (int i = 0; i < 40; ++i)
+         for (int j = 0; j < 40; ++j) {
+            Ray ray = new Ray(Point.ZERO, new Vector((i - 20) * 0.04, (j - 20) * 0.04, -1));
+            assertEquals(simple.traceRay(ray).getRgb(), grid.traceRay(ray).getRgb(), "Wrong color, " + ray);
+         }
+
+      // =============== Boundary Values Tests ==================
+      // TC02: Ray missing the grid gets the background
+      Ray ray = new Ray(Point.ZERO, Vector.AXIS_Z);
+      assertEquals(scene.background.getRgb(), grid.traceRay(ray).getRgb(), "Wrong background color");
+   }
+
+   /**
+    * Test method for the lazy build of the grid of {@link GridRayTracer}.
+    */
+   @Test
+   void testLazyGrid() {
+      Scene scene = new Scene("Lazy scene");
+      GridRayTracer grid = new GridRayTracer(scene);
+
+      // =============== Boundary Values Tests ==================
+      // TC01: Shapes added after the tracer is created are found
+      scene.geometries.add(new Sphere(new Point(0, 0, -100), 10).setEmission(new Color(0, 0, 100)));
+      assertEquals(new Color(0, 0, 100).getRgb(), grid.traceRay(new Ray(Point.ZERO, new Vector(0, 0, -1))).getRgb(),
+         "Wrong sphere color");
+   }
+}
@@ -3,7 +3,10 @@ package renderer;
 import org.junit.jupiter.api.Test;
 import primitives.Color;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -51,4 +54,38 @@ class ImageWriterTests {
         File imageFile = new File("images/" + fileName + ".png");
         assertTrue(imageFile.exists(), "Expected image file was not found.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link ImageWriter#addSample(int, int, Color)}.
+     */
+    @Test
+    void testAddSample() throws IOException {
+        ImageWriter imageWriter = new ImageWriter(3, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Pixel of several samples is their average
+        imageWriter.addSample(0, 0, new Color(100, 0, 50));
+        imageWriter.addSample(0, 0, new Color(200, 30, 50));
+        // TC02: Written pixel replaces its samples
+        imageWriter.addSample(1, 0, new Color(100, 100, 100));
+        imageWriter.writePixel(1, 0, new Color(10, 20, 30));
+
+        // =============== Boundary Values Tests ==================
+        // TC03: Components above 255 are limited, a fraction just below a whole number is truncated
+        imageWriter.addSample(2, 0, new Color(1000, 254.9999999999, 0));
+
+        imageWriter.writeToImage("test_image_samples");
+        BufferedImage image = ImageIO.read(new File("images/test_image_samples.png"));
+        assertEquals(new java.awt.Color(150, 15, 50).getRGB(), image.getRGB(0, 0), "Wrong average");
+        assertEquals(new java.awt.Color(10, 20, 30).getRGB(), image.getRGB(1, 0), "Wrong written pixel");
+        assertEquals(new java.awt.Color(255, 254, 0).getRGB(), image.getRGB(2, 0), "Wrong limited pixel");
+
+        // TC04: Pixel beyond the end of a row must not wrap into the next row
+        ImageWriter twoRows = new ImageWriter(3, 2);
+        Color color = new Color(1, 2, 3);
+        assertThrows(IllegalArgumentException.class, () -> twoRows.addSample(3, 0, color), "Column out of range");
+        assertThrows(IllegalArgumentException.class, () -> twoRows.writePixel(-1, 1, color), "Negative column");
+        assertThrows(IllegalArgumentException.class, () -> twoRows.writePixel(0, 2, color), "Row out of range");
+        assertThrows(IllegalArgumentException.class, () -> twoRows.addSample(0, -1, color), "Negative row");
+    }
+}
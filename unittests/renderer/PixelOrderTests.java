@@ -0,0 +1,56 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link PixelOrder} enum.
+ */
+class PixelOrderTests {
+
+    /**
+     * Checks that an order visits every cell of a grid exactly once.
+     *
+     * @param order the order of the cells
+     * @param cells the amount of cells of the grid
+     */
+    private static void assertPermutation(int[] order, int cells) {
+        assertEquals(cells, order.length, "Wrong amount of cells");
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < cells; ++i) assertEquals(i, sorted[i], "Cell " + i + " must be visited once");
+    }
+
+    /**
+     * Test method for {@link PixelOrder#order(int, int)}.
+     */
+    @Test
+    void testOrder() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Row-major order
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, PixelOrder.ROW_MAJOR.order(3, 2), "Wrong row-major order");
+
+        // TC02: Morton order of a 4x4 square starts with the Z of the top left quadrant
+        int[] morton = PixelOrder.MORTON.order(4, 4);
+        assertPermutation(morton, 16);
+        assertArrayEquals(new int[]{0, 1, 4, 5, 2, 3, 6, 7}, Arrays.copyOf(morton, 8), "Wrong Morton order");
+
+        // TC03: Every cell of the Hilbert order of an 8x8 square is a neighbor of the previous one
+        int[] hilbert = PixelOrder.HILBERT.order(8, 8);
+        assertPermutation(hilbert, 64);
+        for (int i = 1; i < 64; ++i)
+            assertEquals(1, Math.abs(hilbert[i] % 8 - hilbert[i - 1] % 8) + Math.abs(hilbert[i] / 8 - hilbert[i - 1] / 8),
+                    "Hilbert cell " + i + " must be a neighbor of the previous one");
+
+        // =============== Boundary Values Tests ==================
+        // TC04: Grid which is not a power of 2 square
+        assertPermutation(PixelOrder.MORTON.order(5, 3), 15);
+        assertPermutation(PixelOrder.HILBERT.order(3, 7), 21);
+
+        // TC05: Single cell
+        assertArrayEquals(new int[]{0}, PixelOrder.HILBERT.order(1, 1), "Wrong single cell order");
+    }
+}
@@ -0,0 +1,93 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Unit tests for the shadows of the {@link SimpleRayTracer} class
+ */
+class SimpleRayTracerTests {
+   /** The ray from the camera to the lit point of the floor, at the origin */
+   private static final Ray FLOOR_RAY = new Ray(new Point(50, 0, 50), new Vector(-1, 0, -1));
+
+   /**
+    * Creates a scene of a floor lit by a light straight above the origin, with the given
+    * geometries added. The floor reflects only the diffuse light, so the color of a point is
+    * exactly the light intensity scaled by its shadow factor
+    * @param  light      the light source
+    * @param  geometries the geometries added to the scene
+    * @return            the scene
+    */
+   private static Scene createScene(LightSource light, Intersectable... geometries) {
+      Scene scene = new Scene("Shadow scene");
+      scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(1)));
+      scene.geometries.add(geometries);
+      scene.lights.add(light);
+      return scene;
+   }
+
+   /**
+    * Test method for the shadows of {@link SimpleRayTracer#traceRay(Ray)}
+    * by a point light.
+    */
+   @Test
+   void testTransparency() {
+      LightSource light = new PointLight(new Color(200, 200, 200), new Point(0, 0, 100));
+      Double3     lit   = new SimpleRayTracer(createScene(light)).traceRay(FLOOR_RAY).getRgb();
+
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: Opaque sphere beyond the light does not shadow
+      Scene scene = createScene(light, new Sphere(new Point(0, 0, 150), 10));
+      assertEquals(lit, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Blocker beyond the light");
+
+      // TC02: Opaque sphere between the point and the light shadows it completely
+      scene = createScene(light, new Sphere(new Point(0, 0, 50), 10));
+      assertEquals(Double3.ZERO, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Opaque blocker");
+
+      // TC03: Transparent sphere attenuates the light at both of its sides
+      scene = createScene(light, new Sphere(new Point(0, 0, 50), 10).setMaterial(new Material().setkT(0.5)));
+      assertEquals(lit.scale(0.25), new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Transparent blocker");
+
+      // TC04: Transparent sphere in front of an opaque one shadows completely
+      scene = createScene(light, new Sphere(new Point(0, 0, 30), 10).setMaterial(new Material().setkT(0.5)),
+                          new Sphere(new Point(0, 0, 70), 10));
+      assertEquals(Double3.ZERO, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(),
+                   "Transparent blocker in front of an opaque one");
+
+      // =============== Boundary Values Tests ==================
+      // TC05: Transparent sphere beyond the light does not attenuate
+      scene = createScene(light, new Sphere(new Point(0, 0, 150), 10).setMaterial(new Material().setkT(0.5)));
+      assertEquals(lit, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Transparent blocker beyond the light");
+   }
+
+   /**
+    * Test method for the soft shadows of {@link SimpleRayTracer#traceRay(Ray)}
+    * by a point light with a radius.
+    */
+   @Test
+   void testSoftShadows() {
+      LightSource light = new PointLight(new Color(200, 200, 200), new Point(0, 0, 100)).setRadius(5);
+      Double3     lit   = new SimpleRayTracer(createScene(light)).traceRay(FLOOR_RAY).getRgb();
+
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: Opaque sphere beyond the light does not shadow
+      Scene scene = createScene(light, new Sphere(new Point(0, 0, 150), 30));
+      assertEquals(lit, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Blocker beyond the light");
+
+      // TC02: Opaque sphere between the point and the light shadows it
+      scene = createScene(light, new Sphere(new Point(0, 0, 50), 10));
+      assertNotEquals(lit, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Opaque blocker");
+
+      // =============== Boundary Values Tests ==================
+      // TC03: Transparent sphere does not block the samples of the light
+      scene = createScene(light, new Sphere(new Point(0, 0, 50), 10).setMaterial(new Material().setkT(0.5)));
+      assertEquals(lit, new SimpleRayTracer(scene).traceRay(FLOOR_RAY).getRgb(), "Transparent blocker");
+   }
+}